@@ -0,0 +1,229 @@
+package com.example.android.quakereport;
+
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.content.res.Resources;
+import android.os.Build;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.filters.LargeTest;
+import android.support.test.filters.SdkSuppress;
+import android.support.test.rule.ActivityTestRule;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+import android.view.Choreographer;
+import android.view.View;
+import android.widget.AbsListView;
+import android.widget.ListView;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Measures the scroll path of the earthquake list: fills it with {@link #ROW_COUNT}
+ * generated rows, flings through them and logs frame time percentiles. The list lives in
+ * the bare {@link ScrollBenchmarkActivity}, so nothing else runs during the fling.
+ * <p>
+ * Fails if binding a row during the fling looks up a resource through the adapter's
+ * context or takes a new badge from the {@link MagnitudePalette}, or if a row ends up with
+ * a magnitude background that is not an unchanged palette badge of its bucket.
+ * <p>
+ * Run with "./gradlew connectedAndroidTest", then read the ScrollBenchmark lines from
+ * logcat. Needs Jelly Bean or newer, which has the Choreographer.
+ */
+@RunWith(AndroidJUnit4.class)
+@SdkSuppress(minSdkVersion = Build.VERSION_CODES.JELLY_BEAN)
+@LargeTest
+public class ScrollBenchmark {
+
+    // Tag for the log messages
+    private static final String LOG_TAG = ScrollBenchmark.class.getSimpleName();
+
+    private static final int ROW_COUNT = 10000;
+
+    // Duration of the fling through all the rows, and of the warm up fling before it
+    private static final int FLING_DURATION_MS = 30000;
+    private static final int WARM_UP_DURATION_MS = 500;
+
+    private static final String[] PLACES = {
+            "74km NW of Rumoi, Japan",
+            "Pacific-Antarctic Ridge",
+            "3km SSW of Volcano, Hawaii",
+            "South of the Fiji Islands"
+    };
+
+    @Rule
+    public ActivityTestRule<ScrollBenchmarkActivity> activityRule =
+            new ActivityTestRule<>(ScrollBenchmarkActivity.class);
+
+    /**
+     * Counts the resource lookups made through the adapter's context, i.e. by
+     * ContextCompat.getDrawable, ContextCompat.getColor or getString.
+     */
+    private static final class CountingContext extends ContextWrapper {
+
+        int resourceLookups;
+
+        CountingContext(Context base) {
+            super(base);
+        }
+
+        @Override
+        public Resources getResources() {
+            resourceLookups++;
+            return super.getResources();
+        }
+    }
+
+    /**
+     * Records the frame intervals of one fling and releases the test when the list comes
+     * to rest.
+     */
+    private static final class FlingRecorder
+            implements Choreographer.FrameCallback, AbsListView.OnScrollListener {
+
+        final List<Long> frameTimesNanos = new ArrayList<>();
+
+        final CountDownLatch done = new CountDownLatch(1);
+
+        private long lastFrameNanos;
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            if (done.getCount() == 0) {
+                return;
+            }
+            if (lastFrameNanos != 0) {
+                frameTimesNanos.add(frameTimeNanos - lastFrameNanos);
+            }
+            lastFrameNanos = frameTimeNanos;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+
+        @Override
+        public void onScrollStateChanged(AbsListView view, int scrollState) {
+            if (scrollState == SCROLL_STATE_IDLE) {
+                Choreographer.getInstance().removeFrameCallback(this);
+                view.setOnScrollListener(null);
+                done.countDown();
+            }
+        }
+
+        @Override
+        public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount,
+                             int totalItemCount) {
+        }
+    }
+
+    @Test
+    public void flingBindsRowsWithoutResourcesOrDrawableChanges() throws Throwable {
+        final ListView listView = activityRule.getActivity().getListView();
+        CountingContext context = new CountingContext(activityRule.getActivity());
+        final EarthquakeAdapter adapter = new EarthquakeAdapter(context, generateEarthquakes());
+        activityRule.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                listView.setAdapter(adapter);
+            }
+        });
+        InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+
+        // A short fling first, so the list has created every row it recycles afterwards
+        fling(listView, listView.getHeight(), WARM_UP_DURATION_MS);
+
+        final MagnitudePalette magnitudePalette = adapter.getMagnitudePalette();
+        int badgesCreatedAtStart = magnitudePalette.getBadgesCreated();
+        int resourceLookupsAtStart = context.resourceLookups;
+        int rowHeight = listView.getChildAt(0).getHeight();
+        FlingRecorder recorder = fling(listView, rowHeight * ROW_COUNT, FLING_DURATION_MS);
+        int badgesCreated = magnitudePalette.getBadgesCreated() - badgesCreatedAtStart;
+        int resourceLookups = context.resourceLookups - resourceLookupsAtStart;
+
+        // Every row on screen, bound over and over during the fling, must still show the
+        // shared palette badge of its bucket
+        final int[] foreignBadges = new int[1];
+        activityRule.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                int first = listView.getFirstVisiblePosition();
+                for (int i = 0; i < listView.getChildCount(); i++) {
+                    View magnitudeView = listView.getChildAt(i).findViewById(R.id.magnitude);
+                    int bucket = MagnitudePalette.bucketOf(
+                            adapter.getItem(first + i).getMagnitude());
+                    if (!magnitudePalette.isBadge(magnitudeView.getBackground(), bucket)) {
+                        foreignBadges[0]++;
+                    }
+                }
+            }
+        });
+
+        assertTrue("No frames recorded", recorder.frameTimesNanos.size() > 0);
+        long[] sorted = new long[recorder.frameTimesNanos.size()];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = recorder.frameTimesNanos.get(i);
+        }
+        Arrays.sort(sorted);
+
+        Log.i(LOG_TAG, "frames=" + sorted.length
+                + " last_position=" + listView.getLastVisiblePosition()
+                + " p50=" + percentileMs(sorted, 50) + "ms"
+                + " p90=" + percentileMs(sorted, 90) + "ms"
+                + " p95=" + percentileMs(sorted, 95) + "ms"
+                + " p99=" + percentileMs(sorted, 99) + "ms"
+                + " max=" + sorted[sorted.length - 1] / 1e6 + "ms");
+        Log.i(LOG_TAG, "badges_created=" + badgesCreated
+                + " resource_lookups=" + resourceLookups
+                + " foreign_badges=" + foreignBadges[0]);
+
+        assertEquals("Badges created during the fling", 0, badgesCreated);
+        assertEquals("Resource lookups during the fling", 0, resourceLookups);
+        assertEquals("Rows without their palette badge", 0, foreignBadges[0]);
+    }
+
+    /**
+     * Fling the list by the given distance and wait until it comes to rest.
+     */
+    private FlingRecorder fling(final ListView listView, final int distance,
+                                final int durationMs) throws Throwable {
+        final FlingRecorder recorder = new FlingRecorder();
+        activityRule.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                listView.setOnScrollListener(recorder);
+                Choreographer.getInstance().postFrameCallback(recorder);
+                listView.smoothScrollBy(distance, durationMs);
+            }
+        });
+        assertTrue("The list did not come to rest",
+                recorder.done.await(durationMs + 10000, TimeUnit.MILLISECONDS));
+        InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+        return recorder;
+    }
+
+    private static List<Earthquake> generateEarthquakes() {
+        List<Earthquake> earthquakes = new ArrayList<>(ROW_COUNT);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < ROW_COUNT; i++) {
+            // Magnitudes cycle through every bucket of the palette
+            double magnitude = (i % 110) / 10.0;
+            earthquakes.add(new Earthquake("benchmark" + i, magnitude,
+                    PLACES[i % PLACES.length], now - i * 60000L,
+                    "https://earthquake.usgs.gov/", 0, 0));
+        }
+        return earthquakes;
+    }
+
+    private static double percentileMs(long[] sorted, int percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(index, 0)] / 1e6;
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.android.quakereport;
+
+import android.app.Activity;
+import android.os.Bundle;
+import android.widget.ListView;
+
+/**
+ * Bare host of the scroll benchmark: a full screen earthquake list and nothing else, so no
+ * loader, alert or notification runs while the benchmark measures frames.
+ */
+public class ScrollBenchmarkActivity extends Activity {
+
+    private ListView listView;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        listView = new ListView(this);
+        setContentView(listView);
+    }
+
+    public ListView getListView() {
+        return listView;
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.android.quakereport;
+
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+import android.os.Build;
+import android.support.v4.app.NotificationCompat;
+import android.support.v4.app.NotificationManagerCompat;
+
+import java.text.DecimalFormat;
+import java.util.List;
+
+/**
+ * Posts a notification for each {@link AlertRuleEngine.Alert}, tapping it opens the
+ * earthquake page like a tap in the list does.
+ */
+public final class AlertNotifier {
+
+    private static final String CHANNEL_ID = "earthquake_alerts";
+
+    private final Context context;
+
+    public AlertNotifier(Context context) {
+        this.context = context.getApplicationContext();
+
+        // Notification channels are required from Android O
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationChannel channel = new NotificationChannel(CHANNEL_ID,
+                    this.context.getString(R.string.alert_channel_name),
+                    NotificationManager.IMPORTANCE_DEFAULT);
+            NotificationManager manager = (NotificationManager)
+                    this.context.getSystemService(Context.NOTIFICATION_SERVICE);
+            manager.createNotificationChannel(channel);
+        }
+    }
+
+    /**
+     * Post a notification for each of the given alerts.
+     */
+    public void postAlerts(List<AlertRuleEngine.Alert> alerts) {
+        NotificationManagerCompat manager = NotificationManagerCompat.from(context);
+        DecimalFormat decimalFormat = new DecimalFormat("0.0");
+
+        for (AlertRuleEngine.Alert alert : alerts) {
+            Earthquake earthquake = alert.getEarthquake();
+
+            Intent websiteIntent = new Intent(Intent.ACTION_VIEW, Uri.parse(earthquake.getUrl()));
+            PendingIntent pendingIntent = PendingIntent.getActivity(context, 0, websiteIntent, 0);
+
+            NotificationCompat.Builder builder = new NotificationCompat.Builder(context, CHANNEL_ID)
+                    .setSmallIcon(R.mipmap.ic_launcher)
+                    .setContentTitle(context.getString(R.string.alert_title,
+                            decimalFormat.format(earthquake.getMagnitude())))
+                    .setContentText(earthquake.getLocation())
+                    .setWhen(earthquake.getDate())
+                    .setContentIntent(pendingIntent)
+                    .setAutoCancel(true);
+
+            // One notification per earthquake, a later alert for it replaces the earlier one
+            manager.notify(earthquake.getId().hashCode(), builder.build());
+        }
+    }
+}
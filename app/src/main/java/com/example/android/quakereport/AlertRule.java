@@ -0,0 +1,119 @@
+package com.example.android.quakereport;
+
+import java.util.Locale;
+
+/**
+ * A user rule to be notified about new earthquakes, e.g. "M5+ within 200 km of home" or
+ * "any earthquake with Japan in its place". All the conditions set on a rule must hold.
+ * <p>
+ * Only earthquakes that happened after the rule was created match it, so saving a rule
+ * does not notify about the whole feed at once.
+ */
+public class AlertRule {
+
+    // @param id, unique id of the rule
+    private String id;
+
+    // @param minMagnitude, smallest magnitude that matches
+    private double minMagnitude;
+
+    // @param createdAt, time in milliseconds the rule was created
+    private long createdAt;
+
+    // @param regional, true when the rule only covers a circle around a location
+    private boolean regional;
+    private double latitude;
+    private double longitude;
+    private double maxRadiusKm;
+
+    // @param keyword, text the place must contain (ignoring case), or null
+    private String keyword;
+
+    public AlertRule(String id, double minMagnitude, long createdAt) {
+        this.id = id;
+        this.minMagnitude = minMagnitude;
+        this.createdAt = createdAt;
+    }
+
+    /**
+     * Limit the rule to a circle of maxRadiusKm around the given location.
+     */
+    public AlertRule setRegion(double latitude, double longitude, double maxRadiusKm) {
+        this.regional = true;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.maxRadiusKm = maxRadiusKm;
+        return this;
+    }
+
+    /**
+     * Limit the rule to places containing the given keyword, ignoring case.
+     */
+    public AlertRule setKeyword(String keyword) {
+        this.keyword = keyword == null ? null : keyword.toLowerCase(Locale.ROOT);
+        return this;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public double getMinMagnitude() {
+        return minMagnitude;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public boolean isRegional() {
+        return regional;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    public double getMaxRadiusKm() {
+        return maxRadiusKm;
+    }
+
+    public String getKeyword() {
+        return keyword;
+    }
+
+    /**
+     * Return a string identifying the conditions of this rule (not its id nor creation
+     * time), two rules with the same key always match the same earthquakes.
+     */
+    public String getKey() {
+        String key = String.valueOf(minMagnitude);
+        if (regional) {
+            key += "|" + latitude + "|" + longitude + "|" + maxRadiusKm;
+        }
+        if (keyword != null) {
+            key += "|" + keyword;
+        }
+        return key;
+    }
+
+    /**
+     * Return true if the given earthquake matches the time, area and keyword of this rule.
+     * The magnitude is not checked here, the {@link AlertRuleEngine} index already did.
+     *
+     * @param lowerCasePlace the place of the earthquake in lower case
+     */
+    boolean matchesBeyondMagnitude(Earthquake earthquake, String lowerCasePlace) {
+        if (earthquake.getDate() < createdAt) {
+            return false;
+        }
+        if (regional && earthquake.distanceKm(latitude, longitude) > maxRadiusKm) {
+            return false;
+        }
+        return keyword == null || (lowerCasePlace != null && lowerCasePlace.contains(keyword));
+    }
+}
@@ -0,0 +1,236 @@
+package com.example.android.quakereport;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Evaluates {@link AlertRule}s against batches of newly fetched earthquakes.
+ * <p>
+ * Rules are indexed once, by spatial cell and by magnitude threshold: worldwide rules sit
+ * in one list and regional rules in every cell of a {@link #CELL_DEGREES} degree grid their
+ * circle touches, each list sorted by minimum magnitude. An earthquake is then only checked
+ * against the rules of its own cell (plus the worldwide ones) whose threshold it reaches,
+ * and every batch is evaluated in a single pass over its earthquakes.
+ * <p>
+ * Each earthquake is notified at most once, however many rules it matches, and earthquake
+ * ids already notified in an earlier batch (or an earlier run) are skipped.
+ */
+public final class AlertRuleEngine {
+
+    // Size in degrees of a cell of the spatial index
+    private static final double CELL_DEGREES = 10.0;
+
+    private static final int CELL_ROWS = (int) Math.ceil(180 / CELL_DEGREES);
+    private static final int CELL_COLUMNS = (int) Math.ceil(360 / CELL_DEGREES);
+
+    // Kilometers per degree of latitude
+    private static final double KM_PER_DEGREE = 111.2;
+
+    /**
+     * An earthquake together with every rule it matched.
+     */
+    public static final class Alert {
+
+        private final Earthquake earthquake;
+
+        private final List<AlertRule> rules;
+
+        private Alert(Earthquake earthquake, List<AlertRule> rules) {
+            this.earthquake = earthquake;
+            this.rules = rules;
+        }
+
+        public Earthquake getEarthquake() {
+            return earthquake;
+        }
+
+        public List<AlertRule> getRules() {
+            return rules;
+        }
+    }
+
+    // Rules without a region, sorted by minimum magnitude
+    private final List<AlertRule> worldwideRules = new ArrayList<>();
+
+    // Regional rules of each cell, sorted by minimum magnitude
+    private final Map<Integer, List<AlertRule>> cellRules = new HashMap<>();
+
+    private final Set<String> notifiedEventIds;
+
+    // Totals over all the evaluated batches, for the evaluation rate
+    private long evaluatedRules;
+    private long evaluationNanos;
+
+    /**
+     * Build the index of the given rules.
+     *
+     * @param notifiedEventIds ids of the earthquakes already notified, in notification order
+     */
+    public AlertRuleEngine(List<AlertRule> rules, Set<String> notifiedEventIds) {
+        this.notifiedEventIds = new LinkedHashSet<>(notifiedEventIds);
+
+        for (AlertRule rule : rules) {
+            if (rule.isRegional()) {
+                addToCells(rule);
+            } else {
+                worldwideRules.add(rule);
+            }
+        }
+
+        Collections.sort(worldwideRules, MIN_MAGNITUDE_COMPARATOR);
+        for (List<AlertRule> cell : cellRules.values()) {
+            Collections.sort(cell, MIN_MAGNITUDE_COMPARATOR);
+        }
+    }
+
+    /**
+     * Return the alerts for the earthquakes of the given batch that match at least one rule
+     * and were not notified before.
+     */
+    public List<Alert> evaluate(List<Earthquake> batch) {
+        long start = System.nanoTime();
+        List<Alert> alerts = new ArrayList<>();
+
+        for (Earthquake earthquake : batch) {
+            if (notifiedEventIds.contains(earthquake.getId())) {
+                continue;
+            }
+
+            String place = earthquake.getLocation() == null
+                    ? null : earthquake.getLocation().toLowerCase(Locale.ROOT);
+
+            List<AlertRule> matched = new ArrayList<>();
+            collectMatches(worldwideRules, earthquake, place, matched);
+            List<AlertRule> cell = cellRules.get(
+                    cellOf(earthquake.getLatitude(), earthquake.getLongitude()));
+            if (cell != null) {
+                collectMatches(cell, earthquake, place, matched);
+            }
+
+            if (!matched.isEmpty()) {
+                notifiedEventIds.add(earthquake.getId());
+                alerts.add(new Alert(earthquake, matched));
+            }
+        }
+
+        evaluationNanos += System.nanoTime() - start;
+        return alerts;
+    }
+
+    /**
+     * Return the ids of every earthquake notified so far, oldest first.
+     */
+    public Set<String> getNotifiedEventIds() {
+        return notifiedEventIds;
+    }
+
+    /**
+     * Return the number of rules checked against an earthquake so far.
+     */
+    public long getEvaluatedRules() {
+        return evaluatedRules;
+    }
+
+    /**
+     * Return how many rules were checked per second over all the evaluated batches.
+     */
+    public double getRulesPerSecond() {
+        if (evaluationNanos == 0) {
+            return 0;
+        }
+        return evaluatedRules * 1e9 / evaluationNanos;
+    }
+
+    /**
+     * Add the rules of the given list (sorted by minimum magnitude) that the earthquake
+     * matches to matched, stopping at the first threshold above its magnitude.
+     */
+    private void collectMatches(List<AlertRule> rules, Earthquake earthquake, String place,
+                                List<AlertRule> matched) {
+        double magnitude = earthquake.getMagnitude();
+        for (int i = 0; i < rules.size(); i++) {
+            AlertRule rule = rules.get(i);
+            if (rule.getMinMagnitude() > magnitude) {
+                return;
+            }
+            evaluatedRules++;
+            if (rule.matchesBeyondMagnitude(earthquake, place)) {
+                matched.add(rule);
+            }
+        }
+    }
+
+    /**
+     * Add the given regional rule to every cell its circle can reach.
+     */
+    private void addToCells(AlertRule rule) {
+        double latitudeSpan = rule.getMaxRadiusKm() / KM_PER_DEGREE;
+        double minLatitude = Math.max(-90, rule.getLatitude() - latitudeSpan);
+        double maxLatitude = Math.min(90, rule.getLatitude() + latitudeSpan);
+
+        // Longitude degrees shrink towards the poles, near them take every column
+        double widestLatitude = Math.max(Math.abs(minLatitude), Math.abs(maxLatitude));
+        double cos = Math.cos(Math.toRadians(widestLatitude));
+        double longitudeSpan = cos < 1e-6 ? 180 : latitudeSpan / cos;
+
+        int firstRow = row(minLatitude);
+        int lastRow = row(maxLatitude);
+        int firstColumn;
+        int columns;
+        // Spans close to half the globe would wrap onto their own first column
+        if (longitudeSpan >= 180 - CELL_DEGREES) {
+            firstColumn = 0;
+            columns = CELL_COLUMNS;
+        } else {
+            firstColumn = column(rule.getLongitude() - longitudeSpan);
+            int lastColumn = column(rule.getLongitude() + longitudeSpan);
+            // The circle may cross the antimeridian, in which case lastColumn wraps around
+            columns = wrapColumn(lastColumn - firstColumn) + 1;
+        }
+
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int i = 0; i < columns; i++) {
+                int cell = row * CELL_COLUMNS + (firstColumn + i) % CELL_COLUMNS;
+                List<AlertRule> rules = cellRules.get(cell);
+                if (rules == null) {
+                    rules = new ArrayList<>();
+                    cellRules.put(cell, rules);
+                }
+                rules.add(rule);
+            }
+        }
+    }
+
+    private static int cellOf(double latitude, double longitude) {
+        return row(latitude) * CELL_COLUMNS + column(longitude);
+    }
+
+    private static int row(double latitude) {
+        int row = (int) Math.floor((latitude + 90) / CELL_DEGREES);
+        return Math.min(Math.max(row, 0), CELL_ROWS - 1);
+    }
+
+    private static int column(double longitude) {
+        int column = (int) Math.floor((longitude + 180) / CELL_DEGREES);
+        return wrapColumn(column);
+    }
+
+    private static int wrapColumn(int column) {
+        return ((column % CELL_COLUMNS) + CELL_COLUMNS) % CELL_COLUMNS;
+    }
+
+    // Lowest minimum magnitude first
+    private static final Comparator<AlertRule> MIN_MAGNITUDE_COMPARATOR = new Comparator<AlertRule>() {
+        @Override
+        public int compare(AlertRule a, AlertRule b) {
+            return Double.compare(a.getMinMagnitude(), b.getMinMagnitude());
+        }
+    };
+}
@@ -0,0 +1,161 @@
+package com.example.android.quakereport;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.text.TextUtils;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Keeps the user's {@link AlertRule}s, the ids of the earthquakes already notified and the
+ * time of the last evaluation in their own SharedPreferences file.
+ */
+public final class AlertRuleStore {
+
+    // Tag for the log messages
+    private static final String LOG_TAG = AlertRuleStore.class.getSimpleName();
+
+    // Name of the SharedPreferences file holding the rules
+    private static final String PREFS_NAME = "alert_rules";
+
+    private static final String KEY_RULES = "rules";
+    private static final String KEY_NOTIFIED = "notified";
+    private static final String KEY_LAST_EVALUATED = "last_evaluated";
+
+    // Number of notified earthquake ids to remember, older ids are out of the feed anyway
+    private static final int MAX_NOTIFIED = 1000;
+
+    private final SharedPreferences prefs;
+
+    public AlertRuleStore(Context context) {
+        prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Return the saved rules.
+     */
+    public List<AlertRule> readRules() {
+        List<AlertRule> rules = new ArrayList<>();
+
+        String json = prefs.getString(KEY_RULES, null);
+        if (TextUtils.isEmpty(json)) {
+            return rules;
+        }
+
+        try {
+            JSONArray array = new JSONArray(json);
+            for (int i = 0; i < array.length(); i++) {
+                JSONObject item = array.getJSONObject(i);
+                AlertRule rule = new AlertRule(item.getString("id"),
+                        item.getDouble("minmag"), item.getLong("created"));
+                if (item.has("maxradiuskm")) {
+                    rule.setRegion(item.getDouble("latitude"), item.getDouble("longitude"),
+                            item.getDouble("maxradiuskm"));
+                }
+                if (item.has("keyword")) {
+                    rule.setKeyword(item.getString("keyword"));
+                }
+                rules.add(rule);
+            }
+        } catch (JSONException e) {
+            Log.e(LOG_TAG, "Problem parsing the saved alert rules", e);
+        }
+        return rules;
+    }
+
+    /**
+     * Save the given rule, unless a saved rule has the same conditions (see
+     * {@link AlertRule#getKey()}). Return true if the rule was saved.
+     */
+    public boolean saveRule(AlertRule rule) {
+        List<AlertRule> rules = readRules();
+        for (AlertRule saved : rules) {
+            if (saved.getKey().equals(rule.getKey())) {
+                return false;
+            }
+        }
+        rules.add(rule);
+
+        JSONArray array = new JSONArray();
+        try {
+            for (AlertRule saved : rules) {
+                JSONObject item = new JSONObject();
+                item.put("id", saved.getId());
+                item.put("minmag", saved.getMinMagnitude());
+                item.put("created", saved.getCreatedAt());
+                if (saved.isRegional()) {
+                    item.put("latitude", saved.getLatitude());
+                    item.put("longitude", saved.getLongitude());
+                    item.put("maxradiuskm", saved.getMaxRadiusKm());
+                }
+                if (saved.getKeyword() != null) {
+                    item.put("keyword", saved.getKeyword());
+                }
+                array.put(item);
+            }
+        } catch (JSONException e) {
+            Log.e(LOG_TAG, "Problem building the saved alert rules", e);
+            return false;
+        }
+
+        prefs.edit().putString(KEY_RULES, array.toString()).apply();
+        return true;
+    }
+
+    /**
+     * Remove every saved rule, along with the notified ids and the last evaluation time.
+     */
+    public void removeRules() {
+        prefs.edit().clear().apply();
+    }
+
+    /**
+     * Return the time in milliseconds the rules were last evaluated against a complete
+     * fetch, or 0 if they never were.
+     */
+    public long readLastEvaluated() {
+        return prefs.getLong(KEY_LAST_EVALUATED, 0);
+    }
+
+    public void writeLastEvaluated(long lastEvaluated) {
+        prefs.edit().putLong(KEY_LAST_EVALUATED, lastEvaluated).apply();
+    }
+
+    /**
+     * Return the ids of the earthquakes already notified, oldest first.
+     */
+    public Set<String> readNotifiedEventIds() {
+        Set<String> ids = new LinkedHashSet<>();
+        String joined = prefs.getString(KEY_NOTIFIED, null);
+        if (!TextUtils.isEmpty(joined)) {
+            for (String id : TextUtils.split(joined, ",")) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Save the ids of the earthquakes already notified, keeping only the newest ones.
+     */
+    public void writeNotifiedEventIds(Set<String> ids) {
+        Iterator<String> iterator = ids.iterator();
+        for (int skip = ids.size() - MAX_NOTIFIED; skip > 0; skip--) {
+            iterator.next();
+        }
+        List<String> kept = new ArrayList<>();
+        while (iterator.hasNext()) {
+            kept.add(iterator.next());
+        }
+        prefs.edit().putString(KEY_NOTIFIED, TextUtils.join(",", kept)).apply();
+    }
+}
@@ -2,6 +2,12 @@ package com.example.android.quakereport;
 
 public class Earthquake {
 
+    // Mean radius of the earth in kilometers, used for distance calculations
+    private static final double EARTH_RADIUS_KM = 6371.0;
+
+    // @param id, the USGS event id of the earthquake
+    private String id;
+
     // @param magnitude earth quake magnitude
     private Double magnitude;
 
@@ -14,11 +20,23 @@ public class Earthquake {
     // @param url, the url of the earthquake data
     private String url;
 
-    public Earthquake(Double magnitude, String location, long date, String url) {
+    // @param latitude, @param longitude the epicenter of the earthquake in degrees
+    private double latitude;
+    private double longitude;
+
+    public Earthquake(String id, Double magnitude, String location, long date, String url,
+                      double latitude, double longitude) {
+        this.id = id;
         this.magnitude = magnitude;
         this.location = location;
         this.date = date;
         this.url = url;
+        this.latitude = latitude;
+        this.longitude = longitude;
+    }
+
+    public String getId() {
+        return id;
     }
 
     public Double getMagnitude() {
@@ -36,4 +54,31 @@ public class Earthquake {
     public String getUrl() {
         return url;
     }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    /**
+     * Return the great-circle distance in kilometers from the epicenter to the given point.
+     */
+    public double distanceKm(double latitude, double longitude) {
+        return distanceKm(this.latitude, this.longitude, latitude, longitude);
+    }
+
+    /**
+     * Return the great-circle distance in kilometers between two points given in degrees.
+     */
+    public static double distanceKm(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1.0, Math.sqrt(a)));
+    }
 }
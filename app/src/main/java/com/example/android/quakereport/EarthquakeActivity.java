@@ -31,32 +31,49 @@ import android.support.v7.app.AppCompatActivity;
 import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
+import android.view.SubMenu;
 import android.view.View;
+import android.view.ViewTreeObserver;
 import android.widget.AdapterView;
 import android.widget.ListView;
 import android.widget.ProgressBar;
 import android.widget.TextView;
+import android.widget.Toast;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 
 public class EarthquakeActivity extends AppCompatActivity
-        implements LoaderManager.LoaderCallbacks<List<Earthquake>>,
+        implements LoaderManager.LoaderCallbacks<Map<String, List<Earthquake>>>,
         SharedPreferences.OnSharedPreferenceChangeListener {
 
-    /**
-     * URL for earthquake data from the USGS dataset
-     */
-    private static final String USGS_REQUEST_URL =
-            "https://earthquake.usgs.gov/fdsnws/event/1/query";
-
     private static final int EARTHQUAKE_LOADER_ID = 1;
 
+    // Menu group of the watchlist items in the watchlists submenu
+    private static final int WATCHLIST_MENU_GROUP = 1;
+
+    // Key of the selected watchlist name in the saved instance state
+    private static final String STATE_SELECTED_WATCHLIST = "selected_watchlist";
+
     private EarthquakeAdapter earthquakeAdapter;
 
     private ProgressBar progressBar;
 
-    private ConnectivityManager connectivityManager;
+    private EarthquakeSnapshot earthquakeSnapshot;
+
+    // Only set on a cold start, rotations would mix cached results into the metrics
+    private StartupTrace startupTrace;
+
+    private WatchlistStore watchlistStore;
+
+    // Name of the watchlist shown in the list
+    private String selectedWatchlist;
+
+    // Earthquakes of every watchlist from the last load, keyed by watchlist name
+    private Map<String, List<Earthquake>> watchlistResults = new HashMap<>();
 
     // Tag for the log messages
     private static final String LOG_TAG = QueryUtils.class.getSimpleName();
@@ -65,6 +82,9 @@ public class EarthquakeActivity extends AppCompatActivity
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        if (savedInstanceState == null) {
+            startupTrace = new StartupTrace();
+        }
         setContentView(R.layout.earthquake_activity);
 
         Log.i(LOG_TAG, "MainActivity onCreate called");
@@ -74,10 +94,7 @@ public class EarthquakeActivity extends AppCompatActivity
 
         // Make an EmptyState
         emptyViewText = findViewById(R.id.tv_empty_state_earthquake);
-
-        // Define connectitivy manager to check the user have internet connection or not
-        connectivityManager = (ConnectivityManager) getSystemService(Context.CONNECTIVITY_SERVICE);
-
+        earthquakeListView.setEmptyView(emptyViewText);
 
         earthquakeAdapter = new EarthquakeAdapter(this, new ArrayList<Earthquake>() {
         });
@@ -86,6 +103,25 @@ public class EarthquakeActivity extends AppCompatActivity
         // so the list can be populated in the user interface
         earthquakeListView.setAdapter(earthquakeAdapter);
 
+        watchlistStore = new WatchlistStore(this);
+        selectedWatchlist = getString(R.string.watchlist_current_name);
+        if (savedInstanceState != null) {
+            selectedWatchlist = savedInstanceState.getString(
+                    STATE_SELECTED_WATCHLIST, selectedWatchlist);
+        }
+
+        // Bind the last rendered list right away so the first frame already shows data,
+        // the fresh list replaces it once the loader finishes
+        earthquakeSnapshot = new EarthquakeSnapshot(this);
+        List<Earthquake> snapshot = null;
+        if (isCurrentSelected()) {
+            snapshot = earthquakeSnapshot.read(buildCurrentWatchlist().getKey());
+        }
+        if (snapshot != null && !snapshot.isEmpty()) {
+            earthquakeAdapter.addAll(snapshot);
+            findViewById(R.id.loading_spinner).setVisibility(View.GONE);
+        }
+
         // Obtain a reference to the SharedPreferences file for this app
         SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(this);
         // And register to be notified of preference changes
@@ -111,15 +147,35 @@ public class EarthquakeActivity extends AppCompatActivity
             }
         });
 
-        // Get a reference to the ConnectivityManager to check state of network connectivity
-        ConnectivityManager connMgr = (ConnectivityManager)
-                getSystemService(Context.CONNECTIVITY_SERVICE);
-
-        // Get details on the currently active default data network
-        NetworkInfo networkInfo = connMgr.getActiveNetworkInfo();
+        // Keep the connectivity check and the refresh off the critical path,
+        // they only start once the first frame has been drawn
+        final View rootView = findViewById(android.R.id.content);
+        rootView.getViewTreeObserver().addOnPreDrawListener(
+                new ViewTreeObserver.OnPreDrawListener() {
+                    @Override
+                    public boolean onPreDraw() {
+                        rootView.getViewTreeObserver().removeOnPreDrawListener(this);
+                        // Posted from the pre-draw pass, so this runs once the frame is drawn
+                        rootView.post(new Runnable() {
+                            @Override
+                            public void run() {
+                                if (startupTrace != null) {
+                                    startupTrace.reportFirstFrame();
+                                }
+                                startRefresh();
+                            }
+                        });
+                        return true;
+                    }
+                });
+    }
 
-        // If there is a network connection, fetch data
-        if (networkInfo != null && networkInfo.isConnected()) {
+    /**
+     * Start the loader when there is a network connection, otherwise show the
+     * no connection state (keeping the snapshot, if any, on screen).
+     */
+    private void startRefresh() {
+        if (isConnected()) {
             // Initialize the loader. Pass in the int ID constant defined above and pass in null for
             // the bundle. Pass in this activity for the LoaderCallbacks parameter (which is valid
             // because this activity implements the LoaderCallbacks interface).
@@ -135,64 +191,187 @@ public class EarthquakeActivity extends AppCompatActivity
         }
     }
 
-    @NonNull
-    @Override
-    public Loader<List<Earthquake>> onCreateLoader(int i, @Nullable Bundle bundle) {
+    /**
+     * Return true if the currently active default data network is connected.
+     */
+    private boolean isConnected() {
+        ConnectivityManager connMgr = (ConnectivityManager)
+                getSystemService(Context.CONNECTIVITY_SERVICE);
+        NetworkInfo networkInfo = connMgr.getActiveNetworkInfo();
+        return networkInfo != null && networkInfo.isConnectedOrConnecting();
+    }
+
+    /**
+     * Build the watchlist of the query from the settings.
+     */
+    private Watchlist buildCurrentWatchlist() {
         SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(this);
         String minMagnitude = sharedPrefs.getString(
                 getString(R.string.settings_min_magnitude_key),
-                getString(R.string.settings_order_by_magnitude_value));
+                getString(R.string.settings_min_magnitude_default));
 
         String orderBy = sharedPrefs.getString(
                 getString(R.string.settings_order_by_key),
                 getString(R.string.settings_order_by_magnitude_value)
         );
 
-        Uri baseUri = Uri.parse(USGS_REQUEST_URL);
-        Uri.Builder uriBuilder = baseUri.buildUpon();
+        double minMagnitudeValue;
+        try {
+            minMagnitudeValue = Double.parseDouble(minMagnitude);
+        } catch (NumberFormatException e) {
+            Log.e(LOG_TAG, "Invalid minimum magnitude " + minMagnitude, e);
+            minMagnitudeValue = Double.parseDouble(
+                    getString(R.string.settings_min_magnitude_default));
+        }
+
+        String limit = sharedPrefs.getString(
+                getString(R.string.settings_limit_key),
+                getString(R.string.settings_limit_default));
+
+        int limitValue;
+        try {
+            limitValue = Integer.parseInt(limit);
+        } catch (NumberFormatException e) {
+            Log.e(LOG_TAG, "Invalid number of earthquakes " + limit, e);
+            limitValue = Integer.parseInt(getString(R.string.settings_limit_default));
+        }
+        // The USGS API rejects limits outside of this range
+        limitValue = Math.max(1, Math.min(limitValue, Watchlist.MAX_LIMIT));
+
+        return new Watchlist(getString(R.string.watchlist_current_name),
+                minMagnitudeValue, orderBy, limitValue);
+    }
+
+    /**
+     * Build a watchlist of the query from the settings limited to the site location from
+     * the settings, or return null when no valid site is set.
+     */
+    private Watchlist buildSiteWatchlist() {
+        SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(this);
+        String latitude = sharedPrefs.getString(
+                getString(R.string.settings_site_latitude_key), "");
+        String longitude = sharedPrefs.getString(
+                getString(R.string.settings_site_longitude_key), "");
+        String radius = sharedPrefs.getString(
+                getString(R.string.settings_site_radius_key),
+                getString(R.string.settings_site_radius_default));
+
+        double latitudeValue;
+        double longitudeValue;
+        double radiusValue;
+        try {
+            latitudeValue = Double.parseDouble(latitude);
+            longitudeValue = Double.parseDouble(longitude);
+            radiusValue = Double.parseDouble(radius);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (Math.abs(latitudeValue) > 90 || Math.abs(longitudeValue) > 180 || radiusValue <= 0) {
+            return null;
+        }
 
-        uriBuilder.appendQueryParameter("format", "geojson");
-        uriBuilder.appendQueryParameter("limit", "10");
-        uriBuilder.appendQueryParameter("minmag", minMagnitude);
-        uriBuilder.appendQueryParameter("orderby", orderBy);
+        Watchlist current = buildCurrentWatchlist();
+        String name = getString(R.string.watchlist_site_name_format,
+                String.valueOf(current.getLimit()), String.valueOf(current.getMinMagnitude()),
+                String.valueOf(radiusValue), String.valueOf(latitudeValue),
+                String.valueOf(longitudeValue), current.getOrderBy());
+        return new Watchlist(name, current.getMinMagnitude(), current.getOrderBy(),
+                current.getLimit(), latitudeValue, longitudeValue, radiusValue);
+    }
 
-        return new EarthquakeLoader(this, uriBuilder.toString());
+    /**
+     * Return true if the list shows the query from the settings.
+     */
+    private boolean isCurrentSelected() {
+        return selectedWatchlist.equals(getString(R.string.watchlist_current_name));
+    }
+
+    /**
+     * Show the earthquakes of the given watchlist from the last load, no request is made.
+     */
+    private void showWatchlist(String name) {
+        selectedWatchlist = name;
+        setTitle(isCurrentSelected() ? getString(R.string.app_name) : name);
+
+        earthquakeAdapter.clear();
+        List<Earthquake> earthquakes = watchlistResults.get(name);
+        if (earthquakes != null && !earthquakes.isEmpty()) {
+            earthquakeAdapter.addAll(earthquakes);
+        }
+
+        // The checked watchlist and the remove item depend on the selection
+        invalidateOptionsMenu();
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        // The site settings may have changed while the settings were open
+        invalidateOptionsMenu();
+    }
+
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putString(STATE_SELECTED_WATCHLIST, selectedWatchlist);
+    }
+
+    @NonNull
+    @Override
+    public Loader<Map<String, List<Earthquake>>> onCreateLoader(int i, @Nullable Bundle bundle) {
+        // The query from the settings and every saved watchlist are fetched together,
+        // the planner turns them into as few requests as possible
+        List<Watchlist> watchlists = new ArrayList<>();
+        watchlists.add(buildCurrentWatchlist());
+        watchlists.addAll(watchlistStore.read());
+        return new EarthquakeLoader(this, watchlists);
     }
 
     @Override
-    public void onLoadFinished(@NonNull Loader<List<Earthquake>> loader, List<Earthquake> earthquakes) {
+    public void onLoadFinished(@NonNull Loader<Map<String, List<Earthquake>>> loader,
+                               Map<String, List<Earthquake>> results) {
         Log.i(LOG_TAG, "MainActivity onLoadFinished called");
 
-        // Get the network status
-        NetworkInfo networkInfo = connectivityManager.getActiveNetworkInfo();
+        // Define progress barr
+        progressBar = findViewById(R.id.loading_spinner);
+        progressBar.setVisibility(View.GONE);
+
+        // Keep every watchlist so switching between them does not need a new request
+        if (results != null) {
+            watchlistResults = results;
+        }
+        List<Earthquake> earthquakes = results == null ? null : results.get(selectedWatchlist);
 
         /*
-         *  If user have inter net connection set the progress bar and empty set.
-         *  If not show no internet connection state
+         *  A null result means the request failed, only then look up the network status
+         *  to tell the user whether they lost their internet connection.
+         *  In that case keep whatever is on screen (i.e. the startup snapshot).
          * */
-        if (networkInfo != null && networkInfo.isConnectedOrConnecting()) {
-            // Define progress barr
-            progressBar = findViewById(R.id.loading_spinner);
-            progressBar.setVisibility(View.GONE);
-            // Set empty state text to display when no data
-            emptyViewText.setText(R.string.empty_state_no_earthquakes);
-        } else {
-            emptyViewText.setText("No internet connection");
+        if (earthquakes == null) {
+            if (!isConnected()) {
+                emptyViewText.setText("No internet connection");
+            }
+            return;
         }
 
+        // Set empty state text to display when no data
+        emptyViewText.setText(R.string.empty_state_no_earthquakes);
 
-        // Clear the adapter of previous earthquake data
-        earthquakeAdapter.clear();
+        // Clear the adapter of previous earthquake data and add the selected watchlist
+        showWatchlist(selectedWatchlist);
 
-        // If there is a valid list of {@link Earthquake}s, then add them to the adapter's
-        // data set. This will trigger the ListView to update.
-        if (earthquakes != null && !earthquakes.isEmpty()) {
-            earthquakeAdapter.addAll(earthquakes);
+        // Remember what was rendered so the next cold start can show it on the first frame
+        List<Earthquake> current = results.get(getString(R.string.watchlist_current_name));
+        if (current != null) {
+            earthquakeSnapshot.write(buildCurrentWatchlist().getKey(), current);
+        }
+        if (startupTrace != null) {
+            startupTrace.reportFreshData();
         }
     }
 
     @Override
-    public void onLoaderReset(@NonNull Loader<List<Earthquake>> loader) {
+    public void onLoaderReset(@NonNull Loader<Map<String, List<Earthquake>>> loader) {
         Log.i(LOG_TAG, "MainActivity onLoadReset called");
         earthquakeAdapter.clear();
     }
@@ -203,6 +382,32 @@ public class EarthquakeActivity extends AppCompatActivity
         return true;
     }
 
+    @Override
+    public boolean onPrepareOptionsMenu(Menu menu) {
+        // List the query from the settings followed by every saved watchlist
+        SubMenu watchlistsMenu = menu.findItem(R.id.action_watchlists).getSubMenu();
+        watchlistsMenu.clear();
+        List<String> names = new ArrayList<>();
+        names.add(getString(R.string.watchlist_current_name));
+        for (Watchlist watchlist : watchlistStore.read()) {
+            names.add(watchlist.getName());
+        }
+        for (int i = 0; i < names.size(); i++) {
+            MenuItem item = watchlistsMenu.add(WATCHLIST_MENU_GROUP, Menu.FIRST + i, i,
+                    names.get(i));
+            item.setChecked(names.get(i).equals(selectedWatchlist));
+        }
+        watchlistsMenu.setGroupCheckable(WATCHLIST_MENU_GROUP, true, true);
+
+        menu.findItem(R.id.action_remove_watchlist).setVisible(!isCurrentSelected());
+        boolean siteSet = buildSiteWatchlist() != null;
+        menu.findItem(R.id.action_save_site_watchlist).setVisible(siteSet);
+        menu.findItem(R.id.action_add_site_alert).setVisible(siteSet);
+        menu.findItem(R.id.action_stop_alerts).setVisible(
+                !new AlertRuleStore(this).readRules().isEmpty());
+        return super.onPrepareOptionsMenu(menu);
+    }
+
     @Override
     public boolean onOptionsItemSelected(MenuItem item) {
         int id = item.getItemId();
@@ -211,15 +416,105 @@ public class EarthquakeActivity extends AppCompatActivity
             startActivity(settingsIntent);
             return true;
         }
+        if (item.getGroupId() == WATCHLIST_MENU_GROUP) {
+            showWatchlist(item.getTitle().toString());
+            return true;
+        }
+        if (id == R.id.action_save_watchlist) {
+            // Save the query from the settings under a descriptive name, it selects the same
+            // earthquakes as the current list so those can be reused until the next load
+            Watchlist current = buildCurrentWatchlist();
+            String name = getString(R.string.watchlist_name_format,
+                    String.valueOf(current.getLimit()), String.valueOf(current.getMinMagnitude()),
+                    current.getOrderBy());
+            watchlistStore.save(new Watchlist(name, current.getMinMagnitude(),
+                    current.getOrderBy(), current.getLimit()));
+            List<Earthquake> currentResults = watchlistResults.get(current.getName());
+            if (currentResults != null) {
+                watchlistResults.put(name, currentResults);
+            }
+            invalidateOptionsMenu();
+            return true;
+        }
+        if (id == R.id.action_save_site_watchlist) {
+            // A regional watchlist selects other earthquakes than the current list,
+            // so load again to fill it
+            Watchlist siteWatchlist = buildSiteWatchlist();
+            if (siteWatchlist != null) {
+                watchlistStore.save(siteWatchlist);
+                invalidateOptionsMenu();
+                getSupportLoaderManager().restartLoader(EARTHQUAKE_LOADER_ID, null, this);
+            }
+            return true;
+        }
+        if (id == R.id.action_add_alert) {
+            // Notify about every new earthquake reaching the minimum magnitude of the settings
+            addAlertRule(buildCurrentWatchlist());
+            return true;
+        }
+        if (id == R.id.action_add_site_alert) {
+            Watchlist siteWatchlist = buildSiteWatchlist();
+            if (siteWatchlist != null) {
+                addAlertRule(siteWatchlist);
+            }
+            return true;
+        }
+        if (id == R.id.action_stop_alerts) {
+            new AlertRuleStore(this).removeRules();
+            Toast.makeText(this, R.string.alerts_stopped, Toast.LENGTH_SHORT).show();
+            invalidateOptionsMenu();
+            return true;
+        }
+        if (id == R.id.action_remove_watchlist) {
+            watchlistStore.remove(selectedWatchlist);
+            watchlistResults.remove(selectedWatchlist);
+            showWatchlist(getString(R.string.watchlist_current_name));
+            return true;
+        }
         return super.onOptionsItemSelected(item);
     }
 
+    /**
+     * Save an alert rule for new earthquakes of the magnitude and area of the given
+     * watchlist, limited to the keyword from the settings if one is set.
+     */
+    private void addAlertRule(Watchlist watchlist) {
+        AlertRule rule = new AlertRule(UUID.randomUUID().toString(),
+                watchlist.getMinMagnitude(), System.currentTimeMillis());
+        if (watchlist.isRegional()) {
+            rule.setRegion(watchlist.getLatitude(), watchlist.getLongitude(),
+                    watchlist.getMaxRadiusKm());
+        }
+        String keyword = PreferenceManager.getDefaultSharedPreferences(this).getString(
+                getString(R.string.settings_alert_keyword_key), "").trim();
+        if (!keyword.isEmpty()) {
+            rule.setKeyword(keyword);
+        }
+
+        if (new AlertRuleStore(this).saveRule(rule)) {
+            Toast.makeText(this, getString(R.string.alert_added,
+                    String.valueOf(watchlist.getMinMagnitude())), Toast.LENGTH_SHORT).show();
+            invalidateOptionsMenu();
+        } else {
+            Toast.makeText(this, R.string.alert_exists, Toast.LENGTH_SHORT).show();
+        }
+    }
+
     @Override
     public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+        if (key.equals(getString(R.string.settings_site_latitude_key)) ||
+                key.equals(getString(R.string.settings_site_longitude_key)) ||
+                key.equals(getString(R.string.settings_site_radius_key))) {
+            // Show or hide the item saving a watchlist near the site
+            invalidateOptionsMenu();
+        }
         if (key.equals(getString(R.string.settings_min_magnitude_key)) ||
-                key.equals(getString(R.string.settings_order_by_key))) {
+                key.equals(getString(R.string.settings_order_by_key)) ||
+                key.equals(getString(R.string.settings_limit_key))) {
             // Clear the ListView as a new query will be kicked off
             earthquakeAdapter.clear();
+            selectedWatchlist = getString(R.string.watchlist_current_name);
+            setTitle(R.string.app_name);
 
             // Hide the empty state text view as the loading indicator will be displayed
             emptyViewText.setVisibility(View.GONE);
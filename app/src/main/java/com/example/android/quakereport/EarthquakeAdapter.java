@@ -1,8 +1,8 @@
 package com.example.android.quakereport;
 
 import android.content.Context;
-import android.graphics.drawable.GradientDrawable;
-import android.support.v4.content.ContextCompat;
+import android.graphics.drawable.Drawable;
+import android.support.v4.view.ViewCompat;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -26,6 +26,16 @@ public class EarthquakeAdapter extends ArrayAdapter<Earthquake> {
     // Seperator location string
     private static final String LOCATION_SEPARATOR = " of ";
 
+    // Badge drawables for every magnitude bucket, built once for the adapter
+    private final MagnitudePalette magnitudePalette;
+
+    // Formatters and strings reused by every bind
+    private final DecimalFormat decimalFormat = new DecimalFormat("0.0");
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("LLL dd, yyyy");
+    private final SimpleDateFormat timeFormat = new SimpleDateFormat("h:mm a");
+    private final Date dateObject = new Date();
+    private final String nearThe;
+
     /**
      * Constructs a new {@link EarthquakeAdapter}.
      *
@@ -34,6 +44,29 @@ public class EarthquakeAdapter extends ArrayAdapter<Earthquake> {
      */
     public EarthquakeAdapter(Context context, List<Earthquake> earthquakes) {
         super(context, 0, earthquakes);
+        magnitudePalette = new MagnitudePalette(context);
+        nearThe = context.getString(R.string.near_the);
+    }
+
+    /**
+     * Return the palette the magnitude circles are taken from.
+     */
+    public MagnitudePalette getMagnitudePalette() {
+        return magnitudePalette;
+    }
+
+    /**
+     * Holds the views of a list item and its own badge for every magnitude bucket, created
+     * with the item, so binding needs no view lookups nor drawable changes.
+     */
+    private static class ViewHolder {
+        TextView magnitudeView;
+        TextView locationOffsetView;
+        TextView locationPrimaryView;
+        TextView dateView;
+        TextView timeView;
+        Drawable[] badges = new Drawable[MagnitudePalette.BUCKET_COUNT];
+        int bucket = -1;
     }
 
     /**
@@ -45,36 +78,38 @@ public class EarthquakeAdapter extends ArrayAdapter<Earthquake> {
         // Check if there is an existing list item view (called convertView) that we can reuse,
         // otherwise, if convertView is null, then inflate a new list item layout.
         View listItemView = convertView;
+        ViewHolder holder;
         if (listItemView == null) {
             listItemView = LayoutInflater.from(getContext()).inflate(
                     R.layout.earthquake_list_item, parent, false);
+
+            holder = new ViewHolder();
+            holder.magnitudeView = (TextView) listItemView.findViewById(R.id.magnitude);
+            holder.locationOffsetView = (TextView) listItemView.findViewById(R.id.location_offset);
+            holder.locationPrimaryView = (TextView) listItemView.findViewById(R.id.primary_location);
+            holder.dateView = (TextView) listItemView.findViewById(R.id.date);
+            holder.timeView = (TextView) listItemView.findViewById(R.id.time);
+            for (int bucket = 0; bucket < MagnitudePalette.BUCKET_COUNT; bucket++) {
+                holder.badges[bucket] = magnitudePalette.newBadge(bucket);
+            }
+            listItemView.setTag(holder);
+        } else {
+            holder = (ViewHolder) listItemView.getTag();
         }
 
         // Find the earthquake at the given position in the list of earthquakes
         Earthquake currentEarthquake = getItem(position);
 
-
-        // Make the pattern for magnitude
-        DecimalFormat decimalFormat = new DecimalFormat("0.0");
-
-        // format the magnitude then castin it to string
-        String magnitude = decimalFormat.format(currentEarthquake.getMagnitude());
-
-        // Find the TextView with view ID magnitude
-        TextView magnitudeView = (TextView) listItemView.findViewById(R.id.magnitude);
-
-        // Set the proper background color on the magnitude circle.
-        // Fetch the background from the TextView, which is a GradientDrawable.
-        GradientDrawable magnitudeCircle = (GradientDrawable) magnitudeView.getBackground();
-
-        // Get the appropriate background color based on the current earthquake magnitude
-        int magnitudeColor = getMagnitudeColor(currentEarthquake.getMagnitude());
-
-        // Set the color on the magnitude circle
-        magnitudeCircle.setColor(magnitudeColor);
+        // Set the badge of the magnitude bucket on the magnitude circle, each row keeps its
+        // own badge instance per bucket so nothing is shared with (or invalidates) other rows
+        int bucket = MagnitudePalette.bucketOf(currentEarthquake.getMagnitude());
+        if (bucket != holder.bucket) {
+            ViewCompat.setBackground(holder.magnitudeView, holder.badges[bucket]);
+            holder.bucket = bucket;
+        }
 
         // Display the magnitude of the current earthquake in that TextView
-        magnitudeView.setText(magnitude);
+        holder.magnitudeView.setText(decimalFormat.format(currentEarthquake.getMagnitude()));
 
         // Get the original location
         String originalLocation = currentEarthquake.getLocation();
@@ -85,102 +120,33 @@ public class EarthquakeAdapter extends ArrayAdapter<Earthquake> {
         // Check the location, if contains word like "74k NW of
         // We separte it to location_offset and primary_location
         // If not, we add word "Near of"
-        if (originalLocation.contains(LOCATION_SEPARATOR)) {
-            String[] parts = originalLocation.split(LOCATION_SEPARATOR);
-            locationOffset = parts[0] + LOCATION_SEPARATOR;
-            primaryLocation = parts[1];
+        int separatorIndex = originalLocation.indexOf(LOCATION_SEPARATOR);
+        if (separatorIndex >= 0) {
+            locationOffset = originalLocation.substring(0,
+                    separatorIndex + LOCATION_SEPARATOR.length());
+            primaryLocation = originalLocation.substring(
+                    separatorIndex + LOCATION_SEPARATOR.length());
         } else {
-            locationOffset = getContext().getString(R.string.near_the);
+            locationOffset = nearThe;
             primaryLocation = originalLocation;
         }
 
-        // Find the TextView with view ID location_offset
-        TextView locationOffsetView = (TextView) listItemView.findViewById(R.id.location_offset);
         // Display the location_offset of the current earthquake in that TextView
-        locationOffsetView.setText(locationOffset);
-
-        // Find the TextView with view ID location_offset
-        TextView locationPrimaryView = (TextView) listItemView.findViewById(R.id.primary_location);
-
-        // Display the location_offset of the current earthquake in that TextView
-        locationPrimaryView.setText(primaryLocation);
-
-        // Create a new Date object from the time in milliseconds of the earthquake
-        Date dateObject = new Date(currentEarthquake.getDate());
+        holder.locationOffsetView.setText(locationOffset);
 
-        // Find the TextView with view ID date
-        TextView dateView = (TextView) listItemView.findViewById(R.id.date);
+        // Display the primary location of the current earthquake in that TextView
+        holder.locationPrimaryView.setText(primaryLocation);
 
-        // Format the date string (i.e. "Mar 3, 1984")
-        String formattedDate = formatDate(dateObject);
-        // Display the date of the current earthquake in that TextView
-        dateView.setText(formattedDate);
+        // Reuse the Date object with the time in milliseconds of the earthquake
+        dateObject.setTime(currentEarthquake.getDate());
 
-        // Find the TextView with view ID time
-        TextView timeView = (TextView) listItemView.findViewById(R.id.time);
+        // Display the date (i.e. "Mar 3, 1984") of the current earthquake in that TextView
+        holder.dateView.setText(dateFormat.format(dateObject));
 
-        // Format the time string (i.e. "4:30PM")
-        String formattedTime = formatTime(dateObject);
-
-        // Display the time of the current earthquake in that TextView
-        timeView.setText(formattedTime);
+        // Display the time (i.e. "4:30PM") of the current earthquake in that TextView
+        holder.timeView.setText(timeFormat.format(dateObject));
 
         // Return the list item view that is now showing the appropriate data
         return listItemView;
     }
-
-    /**
-     * Return the formatted date string (i.e. "Mar 3, 1984") from a Date object.
-     */
-    private String formatDate(Date dateObject) {
-        SimpleDateFormat dateFormat = new SimpleDateFormat("LLL dd, yyyy");
-        return dateFormat.format(dateObject);
-    }
-
-    /**
-     * Return the formatted date string (i.e. "4:30 PM") from a Date object.
-     */
-    private String formatTime(Date dateObject) {
-        SimpleDateFormat timeFormat = new SimpleDateFormat("h:mm a");
-        return timeFormat.format(dateObject);
-    }
-
-    private int getMagnitudeColor(double magnitude) {
-        int magnitudeColorResourceId;
-        int magnitudeFloor = (int) Math.floor(magnitude);
-        switch (magnitudeFloor) {
-            case 0:
-            case 1:
-                magnitudeColorResourceId = R.color.magnitude1;
-                break;
-            case 2:
-                magnitudeColorResourceId = R.color.magnitude2;
-                break;
-            case 3:
-                magnitudeColorResourceId = R.color.magnitude3;
-                break;
-            case 4:
-                magnitudeColorResourceId = R.color.magnitude4;
-                break;
-            case 5:
-                magnitudeColorResourceId = R.color.magnitude5;
-                break;
-            case 6:
-                magnitudeColorResourceId = R.color.magnitude6;
-                break;
-            case 7:
-                magnitudeColorResourceId = R.color.magnitude7;
-                break;
-            case 8:
-                magnitudeColorResourceId = R.color.magnitude8;
-                break;
-            case 9:
-                magnitudeColorResourceId = R.color.magnitude9;
-                break;
-            default:
-                magnitudeColorResourceId = R.color.magnitude10plus;
-                break;
-        }
-        return ContextCompat.getColor(getContext(), magnitudeColorResourceId);
-    }
 }
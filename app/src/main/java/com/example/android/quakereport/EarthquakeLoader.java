@@ -7,12 +7,14 @@ import android.support.v4.content.AsyncTaskLoader;
 import android.util.Log;
 
 import java.util.List;
+import java.util.Map;
 
 /**
- * Loads a list of earthquakes by using an AsyncTask to perform the
- * network request to the given URL.
+ * Loads the earthquakes of a set of {@link Watchlist}s by using an AsyncTask to perform
+ * the network requests planned by {@link WatchlistPlanner}. The result maps each
+ * watchlist name to its list of earthquakes.
  */
-public class EarthquakeLoader extends AsyncTaskLoader<List<Earthquake>> {
+public class EarthquakeLoader extends AsyncTaskLoader<Map<String, List<Earthquake>>> {
 
     /**
      * Tag for log messages
@@ -20,27 +22,53 @@ public class EarthquakeLoader extends AsyncTaskLoader<List<Earthquake>> {
     private static final String LOG_TAG = EarthquakeLoader.class.getName();
 
     /**
-     * Query URL
+     * Watchlists to load
      */
-    private String mUrl;
+    private List<Watchlist> mWatchlists;
 
-    public EarthquakeLoader(@NonNull Context context, String mUrl) {
+    public EarthquakeLoader(@NonNull Context context, List<Watchlist> mWatchlists) {
         super(context);
-        this.mUrl = mUrl;
+        this.mWatchlists = mWatchlists;
     }
 
     @Nullable
     @Override
-    public List<Earthquake> loadInBackground() {
+    public Map<String, List<Earthquake>> loadInBackground() {
         Log.i(LOG_TAG, "EarthquakeLoader loadInBackground called");
-        // Dont perform the request if there are no URLs, or the first URL is null
-        if (mUrl == null) {
+        // Dont perform the request if there are no watchlists
+        if (mWatchlists == null || mWatchlists.isEmpty()) {
             return null;
         }
 
-        // Perform the HTTP request for earthquake data and process the response.
-        List<Earthquake> earthquakes = QueryUtils.fetchEarthquakeData(mUrl);
-        return earthquakes;
+        // Perform the planned HTTP requests and split the responses per watchlist.
+        Map<String, List<Earthquake>> results = WatchlistPlanner.fetch(mWatchlists);
+
+        // Then fetch only the earthquakes since the last evaluation for the alert rules,
+        // indexed once so every fetched batch is checked in a single pass
+        AlertRuleStore alertRuleStore = new AlertRuleStore(getContext());
+        List<AlertRule> rules = alertRuleStore.readRules();
+        if (!rules.isEmpty()) {
+            final AlertRuleEngine alertRuleEngine =
+                    new AlertRuleEngine(rules, alertRuleStore.readNotifiedEventIds());
+            final AlertNotifier alertNotifier = new AlertNotifier(getContext());
+            long evaluatedAt = System.currentTimeMillis();
+            boolean complete = WatchlistPlanner.fetchAlerts(rules,
+                    alertRuleStore.readLastEvaluated(), new WatchlistPlanner.BatchListener() {
+                        @Override
+                        public void onBatch(List<Earthquake> batch) {
+                            alertNotifier.postAlerts(alertRuleEngine.evaluate(batch));
+                        }
+                    });
+
+            alertRuleStore.writeNotifiedEventIds(alertRuleEngine.getNotifiedEventIds());
+            if (complete) {
+                alertRuleStore.writeLastEvaluated(evaluatedAt);
+            }
+            Log.i(LOG_TAG, "Evaluated " + alertRuleEngine.getEvaluatedRules()
+                    + " alert rules, " + Math.round(alertRuleEngine.getRulesPerSecond())
+                    + " rules per second");
+        }
+        return results;
     }
 
     @Override
@@ -0,0 +1,101 @@
+package com.example.android.quakereport;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.text.TextUtils;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Persists a small copy of the last rendered list of {@link Earthquake}s so it can be
+ * bound on the first frame of the next cold start, before any network work happens.
+ * <p>
+ * The snapshot is keyed by the query it was loaded from (see {@link Watchlist#getKey()}),
+ * so a snapshot is only shown again while the query settings are unchanged.
+ */
+public final class EarthquakeSnapshot {
+
+    // Tag for the log messages
+    private static final String LOG_TAG = EarthquakeSnapshot.class.getSimpleName();
+
+    // Name of the SharedPreferences file holding the snapshot
+    private static final String PREFS_NAME = "earthquake_snapshot";
+
+    private static final String KEY_QUERY = "query";
+    private static final String KEY_EARTHQUAKES = "earthquakes";
+
+    private final SharedPreferences prefs;
+
+    public EarthquakeSnapshot(Context context) {
+        prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Return the snapshot saved for the given query, or null when there is none.
+     */
+    public List<Earthquake> read(String queryKey) {
+        if (!TextUtils.equals(queryKey, prefs.getString(KEY_QUERY, null))) {
+            return null;
+        }
+
+        String json = prefs.getString(KEY_EARTHQUAKES, null);
+        if (TextUtils.isEmpty(json)) {
+            return null;
+        }
+
+        List<Earthquake> earthquakes = new ArrayList<>();
+        try {
+            JSONArray array = new JSONArray(json);
+            for (int i = 0; i < array.length(); i++) {
+                JSONObject item = array.getJSONObject(i);
+                earthquakes.add(new Earthquake(
+                        item.getString("id"),
+                        item.getDouble("mag"),
+                        item.getString("place"),
+                        item.getLong("time"),
+                        item.getString("url"),
+                        item.getDouble("lat"),
+                        item.getDouble("lon")));
+            }
+        } catch (JSONException e) {
+            Log.e(LOG_TAG, "Problem parsing the earthquake snapshot", e);
+            return null;
+        }
+        return earthquakes;
+    }
+
+    /**
+     * Save the given list as the snapshot for the given query. The write is applied
+     * asynchronously so it never blocks the UI thread.
+     */
+    public void write(String queryKey, List<Earthquake> earthquakes) {
+        JSONArray array = new JSONArray();
+        try {
+            for (Earthquake earthquake : earthquakes) {
+                JSONObject item = new JSONObject();
+                item.put("id", earthquake.getId());
+                item.put("mag", earthquake.getMagnitude());
+                item.put("place", earthquake.getLocation());
+                item.put("time", earthquake.getDate());
+                item.put("url", earthquake.getUrl());
+                item.put("lat", earthquake.getLatitude());
+                item.put("lon", earthquake.getLongitude());
+                array.put(item);
+            }
+        } catch (JSONException e) {
+            Log.e(LOG_TAG, "Problem building the earthquake snapshot", e);
+            return;
+        }
+
+        prefs.edit()
+                .putString(KEY_QUERY, queryKey)
+                .putString(KEY_EARTHQUAKES, array.toString())
+                .apply();
+    }
+}
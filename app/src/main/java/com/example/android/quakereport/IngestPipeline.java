@@ -0,0 +1,260 @@
+package com.example.android.quakereport;
+
+import android.os.Process;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fetches the requests planned by {@link WatchlistPlanner} in three stages connected by
+ * bounded queues, so reading the network and decoding JSON overlap:
+ * <ol>
+ * <li>network: {@link #NETWORK_THREADS} threads read the raw responses,</li>
+ * <li>decode: a pool sized to the number of cores parses them into earthquakes,</li>
+ * <li>store: the calling thread gathers the windows of each request and, once a request
+ * is complete, commits the whole group at once (alert listener and watchlist partition).</li>
+ * </ol>
+ * A full queue blocks the stage feeding it, so at most a few raw responses are held in
+ * memory however many requests there are. A single request with a single URL, the common
+ * case, is fetched and decoded on the calling thread without starting any thread.
+ */
+public final class IngestPipeline {
+
+    // Tag for the log messages
+    private static final String LOG_TAG = IngestPipeline.class.getSimpleName();
+
+    // Concurrent network reads, kept small to be gentle with the USGS servers
+    private static final int NETWORK_THREADS = 2;
+
+    private static final int DECODE_THREADS =
+            Math.max(1, Runtime.getRuntime().availableProcessors());
+
+    // Raw responses waiting to be decoded, and decoded batches waiting to be stored
+    private static final int RAW_QUEUE_CAPACITY = DECODE_THREADS;
+    private static final int DECODED_QUEUE_CAPACITY = DECODE_THREADS * 2;
+
+    /**
+     * One URL of a request (a single time window for split requests).
+     */
+    private static final class Unit {
+
+        final int request;
+
+        // Raw JSON response, null if the request failed
+        String json;
+
+        // Decoded earthquakes, null if the request failed
+        List<Earthquake> earthquakes;
+
+        // Error thrown while fetching or decoding, rethrown by the store stage
+        Error error;
+
+        Unit(int request) {
+            this.request = request;
+        }
+    }
+
+    private IngestPipeline() {
+    }
+
+    /**
+     * Fetch the given requests and return the earthquakes of each of their watchlists, keyed
+     * by watchlist name. Watchlists of a request that failed are missing from the result.
+     * <p>
+     * Performs network requests, must not be called on the UI thread.
+     *
+     * @param listener notified of the earthquakes of each request, may be null
+     */
+    public static Map<String, List<Earthquake>> ingest(List<WatchlistPlanner.Request> requests,
+                                                       WatchlistPlanner.BatchListener listener) {
+        Map<String, List<Earthquake>> results = new LinkedHashMap<>();
+        if (requests.isEmpty()) {
+            return results;
+        }
+
+        long now = System.currentTimeMillis();
+        if (requests.size() == 1) {
+            List<String> urls = requests.get(0).getUrls(now);
+            if (urls.size() == 1) {
+                ingestInline(requests.get(0), urls.get(0), listener, results);
+                return results;
+            }
+        }
+
+        final BlockingQueue<Unit> rawQueue = new ArrayBlockingQueue<>(RAW_QUEUE_CAPACITY);
+        final BlockingQueue<Unit> decodedQueue = new ArrayBlockingQueue<>(DECODED_QUEUE_CAPACITY);
+
+        ExecutorService network = Executors.newFixedThreadPool(NETWORK_THREADS,
+                new BackgroundThreadFactory("ingest-network"));
+        ExecutorService decode = Executors.newFixedThreadPool(DECODE_THREADS,
+                new BackgroundThreadFactory("ingest-decode"));
+
+        // Network stage, one task per URL
+        int[] pendingUnits = new int[requests.size()];
+        int totalUnits = 0;
+        for (int i = 0; i < requests.size(); i++) {
+            for (final String url : requests.get(i).getUrls(now)) {
+                final Unit unit = new Unit(i);
+                network.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            unit.json = QueryUtils.fetchJson(url);
+                        } catch (RuntimeException e) {
+                            Log.e(LOG_TAG, "Problem fetching " + url, e);
+                        } catch (Error e) {
+                            unit.error = e;
+                        } finally {
+                            // Always hand the unit on, the store stage waits for every one
+                            handOn(rawQueue, unit);
+                        }
+                    }
+                });
+                pendingUnits[i]++;
+                totalUnits++;
+            }
+        }
+
+        // Decode stage, every worker takes raw responses until it is interrupted
+        for (int i = 0; i < DECODE_THREADS; i++) {
+            decode.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        while (true) {
+                            Unit unit = rawQueue.take();
+                            try {
+                                unit.earthquakes = QueryUtils.extractEarthquakes(unit.json);
+                            } catch (RuntimeException e) {
+                                Log.e(LOG_TAG, "Problem decoding the earthquake JSON", e);
+                            } catch (Error e) {
+                                unit.error = e;
+                            } finally {
+                                unit.json = null;
+                                handOn(decodedQueue, unit);
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        // Shut down by the store stage
+                    }
+                }
+            });
+        }
+
+        // Store stage, on this thread: merge the windows of each request and commit the
+        // request as one group once all of them are in
+        List<Map<String, Earthquake>> merged = new ArrayList<>();
+        boolean[] failed = new boolean[requests.size()];
+        for (int i = 0; i < requests.size(); i++) {
+            merged.add(new LinkedHashMap<String, Earthquake>());
+        }
+        try {
+            for (int stored = 0; stored < totalUnits; stored++) {
+                Unit unit = decodedQueue.take();
+                if (unit.error != null) {
+                    // Fail the load like an error on this thread would, the pools are
+                    // shut down below
+                    throw unit.error;
+                }
+                if (unit.earthquakes == null) {
+                    failed[unit.request] = true;
+                } else {
+                    // Keyed by id, windows may share the earthquakes on their boundary
+                    Map<String, Earthquake> batch = merged.get(unit.request);
+                    for (Earthquake earthquake : unit.earthquakes) {
+                        batch.put(earthquake.getId(), earthquake);
+                    }
+                }
+
+                if (--pendingUnits[unit.request] == 0 && !failed[unit.request]) {
+                    List<Earthquake> batch = new ArrayList<>(merged.get(unit.request).values());
+                    merged.set(unit.request, null);
+                    if (listener != null) {
+                        listener.onBatch(batch);
+                    }
+                    requests.get(unit.request).partition(batch, results);
+                }
+            }
+        } catch (InterruptedException e) {
+            // The loader was cancelled, return what was stored so far
+            Log.w(LOG_TAG, "Ingest interrupted", e);
+            Thread.currentThread().interrupt();
+        } finally {
+            // Stops the decode workers waiting for more input, and any network read
+            // still running if the store stage stopped early
+            network.shutdownNow();
+            decode.shutdownNow();
+        }
+
+        Log.i(LOG_TAG, "Ingested " + totalUnits + " responses for " + requests.size()
+                + " requests with " + DECODE_THREADS + " decode threads");
+        return results;
+    }
+
+    /**
+     * Fetch and decode a request with a single URL on the calling thread.
+     */
+    private static void ingestInline(WatchlistPlanner.Request request, String url,
+                                     WatchlistPlanner.BatchListener listener,
+                                     Map<String, List<Earthquake>> results) {
+        List<Earthquake> batch = null;
+        try {
+            batch = QueryUtils.extractEarthquakes(QueryUtils.fetchJson(url));
+        } catch (RuntimeException e) {
+            Log.e(LOG_TAG, "Problem fetching " + url, e);
+        }
+        if (batch == null) {
+            return;
+        }
+        if (listener != null) {
+            listener.onBatch(batch);
+        }
+        request.partition(batch, results);
+    }
+
+    /**
+     * Put the given unit on the given queue, keeping the interrupt if the pipeline is
+     * shut down meanwhile.
+     */
+    private static void handOn(BlockingQueue<Unit> queue, Unit unit) {
+        try {
+            queue.put(unit);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Names the pipeline threads and runs them at background priority, like AsyncTask does.
+     */
+    private static final class BackgroundThreadFactory implements ThreadFactory {
+
+        private final String name;
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        BackgroundThreadFactory(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            return new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }
+            }, name + "-" + count.incrementAndGet());
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.android.quakereport;
+
+import android.content.Context;
+import android.graphics.drawable.Drawable;
+import android.graphics.drawable.GradientDrawable;
+import android.os.Build;
+import android.support.v4.content.ContextCompat;
+
+/**
+ * Precomputed magnitude circle backgrounds, one per magnitude bucket.
+ * <p>
+ * The circle from magnitude_circle.xml is loaded and mutated once per bucket when the
+ * palette is built, with the color of that bucket. Rows then take a drawable from
+ * {@link #newBadge(int)}, which shares the constant state of the bucket, so binding a row
+ * never resolves a resource nor calls setColor on a drawable shared with other rows.
+ */
+public final class MagnitudePalette {
+
+    // Number of buckets: 0-2, 2-3, ..., 9-10 and 10+
+    public static final int BUCKET_COUNT = 10;
+
+    private static final int[] BUCKET_COLORS = {
+            R.color.magnitude1,
+            R.color.magnitude2,
+            R.color.magnitude3,
+            R.color.magnitude4,
+            R.color.magnitude5,
+            R.color.magnitude6,
+            R.color.magnitude7,
+            R.color.magnitude8,
+            R.color.magnitude9,
+            R.color.magnitude10plus
+    };
+
+    private final Drawable.ConstantState[] badges = new Drawable.ConstantState[BUCKET_COUNT];
+
+    private final int[] colors = new int[BUCKET_COUNT];
+
+    // Number of badges handed out to rows, the scroll benchmark checks none are created
+    // while scrolling
+    private int badgesCreated;
+
+    public MagnitudePalette(Context context) {
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            GradientDrawable badge = (GradientDrawable) ContextCompat.getDrawable(
+                    context, R.drawable.magnitude_circle).mutate();
+            colors[bucket] = ContextCompat.getColor(context, BUCKET_COLORS[bucket]);
+            badge.setColor(colors[bucket]);
+            badges[bucket] = badge.getConstantState();
+        }
+    }
+
+    /**
+     * Return the bucket of the given magnitude, an index into the palette.
+     */
+    public static int bucketOf(double magnitude) {
+        int magnitudeFloor = (int) Math.floor(magnitude);
+        if (magnitudeFloor <= 1) {
+            return 0;
+        }
+        return Math.min(magnitudeFloor - 1, BUCKET_COUNT - 1);
+    }
+
+    /**
+     * Return a new badge drawable for the given bucket, sharing its constant state.
+     * Each view needs its own instance, a drawable can only have one owner.
+     */
+    public Drawable newBadge(int bucket) {
+        badgesCreated++;
+        return badges[bucket].newDrawable();
+    }
+
+    /**
+     * Return true if the given drawable is a badge of the given bucket that still shares
+     * the palette state, i.e. it was neither replaced nor mutated. The color is checked too
+     * from Nougat, the first release that can read it back.
+     */
+    boolean isBadge(Drawable drawable, int bucket) {
+        if (drawable == null || drawable.getConstantState() != badges[bucket]) {
+            return false;
+        }
+        return Build.VERSION.SDK_INT < Build.VERSION_CODES.N
+                || ((GradientDrawable) drawable).getColor().getDefaultColor() == colors[bucket];
+    }
+
+    /**
+     * Return the number of badges handed out so far.
+     */
+    public int getBadgesCreated() {
+        return badgesCreated;
+    }
+}
@@ -31,18 +31,10 @@ public final class QueryUtils {
     private static final String LOG_TAG = QueryUtils.class.getSimpleName();
 
     /*
-     *   Query the USGS dataset and return an {@link List<Earthquake>} object to represent
-     *   a list of earthquake
+     *   Query the USGS dataset and return the raw JSON response, or null if the request
+     *   failed. The {@link IngestPipeline} decodes it with {@link #extractEarthquakes(String)}.
      * */
-    public static List<Earthquake> fetchEarthquakeData(String requestUrl) {
-
-//        try {
-//            Thread.sleep(20000);
-//        } catch (InterruptedException e) {
-//            e.printStackTrace();
-//        }
-
-        Log.i(LOG_TAG, "fetchEarthquakeData called");
+    public static String fetchJson(String requestUrl) {
         // Create URL object
         URL url = createUrl(requestUrl);
 
@@ -53,11 +45,7 @@ public final class QueryUtils {
         } catch (IOException e) {
             Log.e(LOG_TAG, "Error closing input stream", e);
         }
-
-
-        List<Earthquake> earthquakes = extractEarthquakes(jsonResponse);
-        return earthquakes;
-
+        return jsonResponse;
     }
 
     /**
@@ -140,33 +128,45 @@ public final class QueryUtils {
 
     /**
      * Return a list of {@link Earthquake} objects that has been built up from
-     * parsing a JSON response.
+     * parsing a JSON response, or null if the response is empty or not a feature list.
+     * Features missing a field are skipped one by one, the rest of the response is kept.
      */
-    private static List<Earthquake> extractEarthquakes(String earthquakeJSON) {
+    public static List<Earthquake> extractEarthquakes(String earthquakeJSON) {
 
         // If the JSON String is empty or null, then return null
         if (TextUtils.isEmpty(earthquakeJSON)) {
             return null;
         }
 
-        List<Earthquake> earthquakes = new ArrayList<>();
+        // Extract JSONArray features, without it the response is unusable so the
+        // request counts as failed
+        JSONArray features;
         try {
-
-            // TODO: Parse the response given by the SAMPLE_JSON_RESPONSE string and
-            // build up a list of Earthquake objects with the corresponding data.
-
-            // Covert SAMPLE_JSON_RESPONSE into JSONObject
             JSONObject jsonObjectRoot = new JSONObject(earthquakeJSON);
+            features = jsonObjectRoot.getJSONArray("features");
+        } catch (JSONException e) {
+            Log.e(LOG_TAG, "Problem parsing the earthquake JSON results", e);
+            return null;
+        }
 
-            // Extract JSONArray features
-            JSONArray features = jsonObjectRoot.getJSONArray("features");
-
-            // Iterate through all features data
-            for (int i = 0; i < features.length(); i++) {
+        List<Earthquake> earthquakes = new ArrayList<>();
+        int skipped = 0;
 
+        // Iterate through all features data
+        for (int i = 0; i < features.length(); i++) {
+            try {
                 // get the data from features and store it in the variables f
                 JSONObject currentEarthquake = features.getJSONObject(i);
 
+                // get the event id
+                String id = currentEarthquake.getString("id");
+
+                // get the epicenter, coordinates are ordered longitude, latitude, depth
+                JSONArray coordinates = currentEarthquake.getJSONObject("geometry")
+                        .getJSONArray("coordinates");
+                double longitude = coordinates.getDouble(0);
+                double latitude = coordinates.getDouble(1);
+
                 // get the node properties
                 JSONObject properties = currentEarthquake.getJSONObject("properties");
 
@@ -178,20 +178,19 @@ public final class QueryUtils {
                 // Extract the value for the key called "url"
                 String url = properties.getString("url");
 
-                // Casting the all variable except String
-                // String magnitudeInString = String.valueOf(magnitude);
-                // String timeInString = String.valueOf(time);
-
-                Earthquake earthquake = new Earthquake(magnitude, place, time, url);
+                Earthquake earthquake = new Earthquake(id, magnitude, place, time, url,
+                        latitude, longitude);
 
                 earthquakes.add(earthquake);
+            } catch (JSONException e) {
+                // A feature with a missing or null field (i.e. no magnitude yet) only
+                // loses that earthquake, not the rest of the response
+                skipped++;
             }
+        }
 
-        } catch (JSONException e) {
-            // If an error is thrown when executing any of the above statements in the "try" block,
-            // catch the exception here, so the app doesn't crash. Print a log message
-            // with the message from the exception.
-            Log.e("QueryUtils", "Problem parsing the earthquake JSON results", e);
+        if (skipped > 0) {
+            Log.w(LOG_TAG, "Skipped " + skipped + " earthquakes with missing fields");
         }
 
         // Return the list of earthquakes
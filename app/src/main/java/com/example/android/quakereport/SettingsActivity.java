@@ -26,9 +26,24 @@ public class SettingsActivity extends AppCompatActivity {
             Preference minMagnitude = findPreference(getString(R.string.settings_min_magnitude_key));
             bindPreferenceSummaryToValue(minMagnitude);
 
+            Preference limit = findPreference(getString(R.string.settings_limit_key));
+            bindPreferenceSummaryToValue(limit);
+
             Preference orderBy = findPreference(getString(R.string.settings_order_by_key));
             bindPreferenceSummaryToValue(orderBy);
 
+            Preference siteLatitude = findPreference(getString(R.string.settings_site_latitude_key));
+            bindPreferenceSummaryToValue(siteLatitude);
+
+            Preference siteLongitude = findPreference(getString(R.string.settings_site_longitude_key));
+            bindPreferenceSummaryToValue(siteLongitude);
+
+            Preference siteRadius = findPreference(getString(R.string.settings_site_radius_key));
+            bindPreferenceSummaryToValue(siteRadius);
+
+            Preference alertKeyword = findPreference(getString(R.string.settings_alert_keyword_key));
+            bindPreferenceSummaryToValue(alertKeyword);
+
         }
 
         @Override
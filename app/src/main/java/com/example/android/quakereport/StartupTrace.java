@@ -0,0 +1,60 @@
+package com.example.android.quakereport;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * Records the two startup metrics of {@link EarthquakeActivity}: the time to the first
+ * frame and the time until fresh data from the network is shown.
+ * <p>
+ * Both are logged as "startup_metric name=valuems" lines, measured from onCreate, so
+ * they can be collected from logcat and tracked over time.
+ */
+public final class StartupTrace {
+
+    // Tag for the log messages
+    private static final String LOG_TAG = StartupTrace.class.getSimpleName();
+
+    private static final String TIME_TO_FIRST_FRAME = "time_to_first_frame";
+    private static final String TIME_TO_FRESH_DATA = "time_to_fresh_data";
+
+    private final long startUptime;
+
+    private boolean firstFrameReported;
+
+    private boolean freshDataReported;
+
+    /**
+     * Start a new trace, should be called as early as possible in onCreate of a cold start.
+     */
+    public StartupTrace() {
+        startUptime = SystemClock.uptimeMillis();
+    }
+
+    /**
+     * Report that the first frame has been drawn. Only the first call is recorded.
+     */
+    public void reportFirstFrame() {
+        if (firstFrameReported) {
+            return;
+        }
+        firstFrameReported = true;
+        report(TIME_TO_FIRST_FRAME);
+    }
+
+    /**
+     * Report that fresh data has been bound to the list. Only the first call is recorded.
+     */
+    public void reportFreshData() {
+        if (freshDataReported) {
+            return;
+        }
+        freshDataReported = true;
+        report(TIME_TO_FRESH_DATA);
+    }
+
+    private void report(String metric) {
+        long elapsed = SystemClock.uptimeMillis() - startUptime;
+        Log.i(LOG_TAG, "startup_metric " + metric + "=" + elapsed + "ms");
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.android.quakereport;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A saved earthquake query, e.g. "M4+ worldwide" or "M2+ within 300 km of a site".
+ * <p>
+ * Watchlists are not fetched one by one, the {@link WatchlistPlanner} merges them into
+ * as few USGS requests as possible and each watchlist then picks its own events out of
+ * the fetched batch with {@link #select(List)}.
+ */
+public class Watchlist {
+
+    // Order by values, the same ones the USGS API and the order by setting use
+    public static final String ORDER_BY_MAGNITUDE = "magnitude";
+    public static final String ORDER_BY_TIME = "time";
+
+    // Largest number of events the USGS API returns for a single request
+    public static final int MAX_LIMIT = 20000;
+
+    // @param name, unique display name of the watchlist
+    private String name;
+
+    // @param minMagnitude, smallest magnitude to include
+    private double minMagnitude;
+
+    // @param orderBy, either ORDER_BY_MAGNITUDE or ORDER_BY_TIME
+    private String orderBy;
+
+    // @param limit, maximum number of earthquakes to keep
+    private int limit;
+
+    // @param regional, true when the watchlist only covers a circle around a location
+    private boolean regional;
+    private double latitude;
+    private double longitude;
+    private double maxRadiusKm;
+
+    // @param startTime, time in milliseconds of the oldest earthquake to include, or 0 for
+    // the default USGS window of the last 30 days
+    private long startTime;
+
+    /**
+     * Constructs a worldwide watchlist.
+     */
+    public Watchlist(String name, double minMagnitude, String orderBy, int limit) {
+        this.name = name;
+        this.minMagnitude = minMagnitude;
+        this.orderBy = orderBy;
+        this.limit = limit;
+    }
+
+    /**
+     * Constructs a watchlist covering a circle of maxRadiusKm around the given location.
+     */
+    public Watchlist(String name, double minMagnitude, String orderBy, int limit,
+                     double latitude, double longitude, double maxRadiusKm) {
+        this(name, minMagnitude, orderBy, limit);
+        this.regional = true;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.maxRadiusKm = maxRadiusKm;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public double getMinMagnitude() {
+        return minMagnitude;
+    }
+
+    public String getOrderBy() {
+        return orderBy;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public boolean isRegional() {
+        return regional;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    public double getMaxRadiusKm() {
+        return maxRadiusKm;
+    }
+
+    /**
+     * Limit the watchlist to earthquakes that happened from the given time on.
+     */
+    public Watchlist setStartTime(long startTime) {
+        this.startTime = startTime;
+        return this;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * Return a string identifying the query of this watchlist (not its name), two
+     * watchlists with the same key always select the same earthquakes.
+     */
+    public String getKey() {
+        String key = minMagnitude + "|" + orderBy + "|" + limit;
+        if (regional) {
+            key += "|" + latitude + "|" + longitude + "|" + maxRadiusKm;
+        }
+        if (startTime != 0) {
+            key += "|" + startTime;
+        }
+        return key;
+    }
+
+    /**
+     * Return true if the given earthquake belongs to this watchlist, ignoring the limit.
+     */
+    public boolean matches(Earthquake earthquake) {
+        if (earthquake.getMagnitude() < minMagnitude || earthquake.getDate() < startTime) {
+            return false;
+        }
+        return !regional || earthquake.distanceKm(latitude, longitude) <= maxRadiusKm;
+    }
+
+    /**
+     * Return the earthquakes of this watchlist out of a fetched batch: the matching ones,
+     * sorted by the watchlist order and cut to its limit.
+     */
+    public List<Earthquake> select(List<Earthquake> batch) {
+        List<Earthquake> selected = new ArrayList<>();
+        for (Earthquake earthquake : batch) {
+            if (matches(earthquake)) {
+                selected.add(earthquake);
+            }
+        }
+
+        Collections.sort(selected, ORDER_BY_MAGNITUDE.equals(orderBy)
+                ? MAGNITUDE_COMPARATOR : TIME_COMPARATOR);
+
+        if (selected.size() > limit) {
+            selected = new ArrayList<>(selected.subList(0, limit));
+        }
+        return selected;
+    }
+
+    // Largest magnitude first, same as the USGS "magnitude" order
+    private static final Comparator<Earthquake> MAGNITUDE_COMPARATOR = new Comparator<Earthquake>() {
+        @Override
+        public int compare(Earthquake a, Earthquake b) {
+            return Double.compare(b.getMagnitude(), a.getMagnitude());
+        }
+    };
+
+    // Most recent first, same as the USGS "time" order
+    private static final Comparator<Earthquake> TIME_COMPARATOR = new Comparator<Earthquake>() {
+        @Override
+        public int compare(Earthquake a, Earthquake b) {
+            return a.getDate() < b.getDate() ? 1 : (a.getDate() == b.getDate() ? 0 : -1);
+        }
+    };
+}
@@ -0,0 +1,419 @@
+package com.example.android.quakereport;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Merges a set of {@link Watchlist}s into the smallest set of USGS requests that covers
+ * all of them, so N watchlists cost about one fetch instead of N.
+ * <p>
+ * The rules are:
+ * <ul>
+ * <li>all worldwide watchlists share one request using the smallest minimum magnitude,</li>
+ * <li>a regional watchlist is covered by that worldwide request when its own minimum
+ * magnitude is not smaller,</li>
+ * <li>the remaining regional watchlists share a request when one circle contains the
+ * other.</li>
+ * </ul>
+ * Watchlists with the same query (see {@link Watchlist#getKey()}) count as one. A request
+ * is then sent in one of three ways:
+ * <ul>
+ * <li>covering a single query, with that query's own order and limit,</li>
+ * <li>covering queries that are all ordered by magnitude over the same area as the request,
+ * ordered by magnitude with the largest of their limits. The top N of each query is then
+ * part of the fetched top N, so the result is exact,</li>
+ * <li>otherwise ordered by time and capped at {@link #MAX_SHARED_LIMIT}. If the cap cuts the
+ * feed, time ordered watchlists still get their exact most recent events, but magnitude
+ * ordered ones only get the largest events among the most recent ones fetched.</li>
+ * </ul>
+ * A time ordered request whose minimum magnitude is below {@link #SPLIT_BELOW_MAGNITUDE}
+ * covers a large feed, so it is split into {@link #SHARED_WINDOWS} time windows that the
+ * {@link IngestPipeline} reads and decodes concurrently.
+ * <p>
+ * {@link AlertRule}s are planned apart with {@link #fetchAlerts(List, long, BatchListener)},
+ * as time ordered watchlists starting at the last evaluation, so they only fetch the new
+ * earthquakes and never change the requests of the user's own watchlists.
+ */
+public final class WatchlistPlanner {
+
+    /**
+     * URL for earthquake data from the USGS dataset
+     */
+    private static final String USGS_REQUEST_URL =
+            "https://earthquake.usgs.gov/fdsnws/event/1/query";
+
+    // Limit of the requests shared by queries with different orders
+    private static final int MAX_SHARED_LIMIT = Watchlist.MAX_LIMIT;
+
+    // Shared requests below this minimum magnitude are split into time windows
+    private static final double SPLIT_BELOW_MAGNITUDE = 2.5;
+
+    // Number of time windows of a split request, and the days they cover together
+    // (the USGS default when no start time is given)
+    private static final int SHARED_WINDOWS = 4;
+    private static final int SHARED_WINDOW_DAYS = 30;
+
+    private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000L;
+
+    // Name prefix of the watchlists covering alert rules
+    private static final String ALERT_WATCHLIST_PREFIX = "alert:";
+
+    // How far alert requests reach back before the last evaluation, the USGS publishes
+    // events some minutes after they happen. Earthquakes fetched twice are only notified once.
+    private static final long ALERT_OVERLAP_MILLIS = 60 * 60 * 1000L;
+
+    private WatchlistPlanner() {
+    }
+
+    /**
+     * Receives the fetched earthquakes of each request, before they are split into
+     * watchlists. Called on the thread running {@link #fetchAlerts(List, long, BatchListener)}.
+     */
+    public interface BatchListener {
+        void onBatch(List<Earthquake> batch);
+    }
+
+    /**
+     * A single USGS request and the watchlists it covers.
+     */
+    public static final class Request {
+
+        private final List<Watchlist> watchlists = new ArrayList<>();
+
+        private double minMagnitude;
+
+        private boolean regional;
+        private double latitude;
+        private double longitude;
+        private double maxRadiusKm;
+
+        // Oldest start time of the watchlists, 0 if one of them has none
+        private long startTime;
+
+        private Request(Watchlist watchlist) {
+            minMagnitude = watchlist.getMinMagnitude();
+            regional = watchlist.isRegional();
+            latitude = watchlist.getLatitude();
+            longitude = watchlist.getLongitude();
+            maxRadiusKm = watchlist.getMaxRadiusKm();
+            startTime = watchlist.getStartTime();
+            watchlists.add(watchlist);
+        }
+
+        public List<Watchlist> getWatchlists() {
+            return watchlists;
+        }
+
+        /**
+         * Return the watchlists of this request with distinct queries, watchlists selecting
+         * the same earthquakes under different names only count once.
+         */
+        private List<Watchlist> getDistinctQueries() {
+            List<Watchlist> distinct = new ArrayList<>();
+            List<String> keys = new ArrayList<>();
+            for (Watchlist watchlist : watchlists) {
+                if (!keys.contains(watchlist.getKey())) {
+                    keys.add(watchlist.getKey());
+                    distinct.add(watchlist);
+                }
+            }
+            return distinct;
+        }
+
+        /**
+         * Return true if the given watchlist covers exactly the area of this request.
+         */
+        private boolean hasSameArea(Watchlist watchlist) {
+            if (!regional) {
+                return !watchlist.isRegional();
+            }
+            return watchlist.isRegional()
+                    && watchlist.getLatitude() == latitude
+                    && watchlist.getLongitude() == longitude
+                    && watchlist.getMaxRadiusKm() == maxRadiusKm;
+        }
+
+        /**
+         * Return the largest limit of the given queries if they are all ordered by magnitude
+         * over the area of this request, so a magnitude ordered fetch is an exact superset,
+         * otherwise return -1.
+         */
+        private int getMagnitudeSupersetLimit(List<Watchlist> queries) {
+            int limit = 0;
+            for (Watchlist query : queries) {
+                if (!Watchlist.ORDER_BY_MAGNITUDE.equals(query.getOrderBy())
+                        || !hasSameArea(query)) {
+                    return -1;
+                }
+                limit = Math.max(limit, query.getLimit());
+            }
+            return limit;
+        }
+
+        /**
+         * Return true if every earthquake of the given regional watchlist is inside the
+         * area of this request, ignoring magnitudes.
+         */
+        private boolean containsArea(Watchlist watchlist) {
+            return !regional || circleContains(latitude, longitude, maxRadiusKm,
+                    watchlist.getLatitude(), watchlist.getLongitude(),
+                    watchlist.getMaxRadiusKm());
+        }
+
+        /**
+         * Return true if the area of this request is inside the given regional watchlist.
+         */
+        private boolean isInsideArea(Watchlist watchlist) {
+            return regional && circleContains(watchlist.getLatitude(), watchlist.getLongitude(),
+                    watchlist.getMaxRadiusKm(), latitude, longitude, maxRadiusKm);
+        }
+
+        /**
+         * Add the given watchlist, widening the magnitude and area of this request so that
+         * it is still a superset of every watchlist it covers.
+         */
+        private void add(Watchlist watchlist) {
+            minMagnitude = Math.min(minMagnitude, watchlist.getMinMagnitude());
+            if (startTime != 0) {
+                startTime = watchlist.getStartTime() == 0
+                        ? 0 : Math.min(startTime, watchlist.getStartTime());
+            }
+            if (regional && !containsArea(watchlist)) {
+                // Only called when one circle contains the other, so take the larger one
+                latitude = watchlist.getLatitude();
+                longitude = watchlist.getLongitude();
+                maxRadiusKm = watchlist.getMaxRadiusKm();
+            }
+            watchlists.add(watchlist);
+        }
+
+        /**
+         * Return the USGS query URLs for this request, more than one when it is split into
+         * time windows. The windows may share boundary events, so merge them by id.
+         */
+        public List<String> getUrls(long nowMillis) {
+            List<String> urls = new ArrayList<>();
+            SimpleDateFormat isoFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss", Locale.US);
+            isoFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+            // A request with a start time only covers the events since then, no need to split
+            List<Watchlist> queries = getDistinctQueries();
+            if (startTime != 0) {
+                urls.add(buildUrl(isoFormat.format(new Date(startTime)), null));
+                return urls;
+            }
+            if (queries.size() == 1 || getMagnitudeSupersetLimit(queries) >= 0
+                    || minMagnitude >= SPLIT_BELOW_MAGNITUDE) {
+                urls.add(buildUrl(null, null));
+                return urls;
+            }
+
+            long windowMillis = SHARED_WINDOW_DAYS * MILLIS_PER_DAY / SHARED_WINDOWS;
+            long start = nowMillis - SHARED_WINDOW_DAYS * MILLIS_PER_DAY;
+            for (int i = 0; i < SHARED_WINDOWS; i++) {
+                // Leave the last window open ended so it includes the newest events
+                String endTime = i == SHARED_WINDOWS - 1
+                        ? null : isoFormat.format(new Date(start + windowMillis));
+                urls.add(buildUrl(isoFormat.format(new Date(start)), endTime));
+                start += windowMillis;
+            }
+            return urls;
+        }
+
+        /**
+         * Return the USGS query URL for this request, limited to the given time window
+         * when the bounds are not null.
+         */
+        private String buildUrl(String startTime, String endTime) {
+            QueryUrl queryUrl = new QueryUrl(USGS_REQUEST_URL);
+
+            queryUrl.appendQueryParameter("format", "geojson");
+            queryUrl.appendQueryParameter("minmag", String.valueOf(minMagnitude));
+
+            List<Watchlist> queries = getDistinctQueries();
+            int magnitudeSupersetLimit = getMagnitudeSupersetLimit(queries);
+            if (queries.size() == 1) {
+                Watchlist watchlist = queries.get(0);
+                queryUrl.appendQueryParameter("limit", String.valueOf(watchlist.getLimit()));
+                queryUrl.appendQueryParameter("orderby", watchlist.getOrderBy());
+            } else if (magnitudeSupersetLimit >= 0) {
+                queryUrl.appendQueryParameter("limit", String.valueOf(magnitudeSupersetLimit));
+                queryUrl.appendQueryParameter("orderby", Watchlist.ORDER_BY_MAGNITUDE);
+            } else {
+                queryUrl.appendQueryParameter("limit", String.valueOf(MAX_SHARED_LIMIT));
+                queryUrl.appendQueryParameter("orderby", Watchlist.ORDER_BY_TIME);
+            }
+
+            if (regional) {
+                queryUrl.appendQueryParameter("latitude", String.valueOf(latitude));
+                queryUrl.appendQueryParameter("longitude", String.valueOf(longitude));
+                queryUrl.appendQueryParameter("maxradiuskm", String.valueOf(maxRadiusKm));
+            }
+
+            if (startTime != null) {
+                queryUrl.appendQueryParameter("starttime", startTime);
+            }
+            if (endTime != null) {
+                queryUrl.appendQueryParameter("endtime", endTime);
+            }
+            return queryUrl.toString();
+        }
+
+        /**
+         * Split a batch fetched for this request into the individual watchlists, keyed by
+         * watchlist name.
+         */
+        public void partition(List<Earthquake> batch, Map<String, List<Earthquake>> results) {
+            for (Watchlist watchlist : watchlists) {
+                results.put(watchlist.getName(), watchlist.select(batch));
+            }
+        }
+    }
+
+    /**
+     * Builds a URL with an encoded query, like Uri.Builder does, in plain Java so the
+     * planner can be unit tested without the Android framework.
+     */
+    private static final class QueryUrl {
+
+        private final StringBuilder url;
+
+        private boolean hasQuery;
+
+        QueryUrl(String baseUrl) {
+            url = new StringBuilder(baseUrl);
+        }
+
+        void appendQueryParameter(String name, String value) {
+            url.append(hasQuery ? '&' : '?');
+            hasQuery = true;
+            try {
+                url.append(URLEncoder.encode(name, "UTF-8")).append('=')
+                        .append(URLEncoder.encode(value, "UTF-8"));
+            } catch (UnsupportedEncodingException e) {
+                // UTF-8 is always supported
+                throw new AssertionError(e);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return url.toString();
+        }
+    }
+
+    /**
+     * Return true if the circle (innerLatitude, innerLongitude, innerRadiusKm) lies
+     * entirely inside the circle (latitude, longitude, radiusKm).
+     */
+    private static boolean circleContains(double latitude, double longitude, double radiusKm,
+                                          double innerLatitude, double innerLongitude,
+                                          double innerRadiusKm) {
+        double distance = Earthquake.distanceKm(latitude, longitude,
+                innerLatitude, innerLongitude);
+        return distance + innerRadiusKm <= radiusKm;
+    }
+
+    /**
+     * Return the requests needed to fetch all the given watchlists.
+     */
+    public static List<Request> plan(List<Watchlist> watchlists) {
+        Request worldwide = null;
+        for (Watchlist watchlist : watchlists) {
+            if (!watchlist.isRegional()) {
+                if (worldwide == null) {
+                    worldwide = new Request(watchlist);
+                } else {
+                    worldwide.add(watchlist);
+                }
+            }
+        }
+
+        List<Request> regional = new ArrayList<>();
+        for (Watchlist watchlist : watchlists) {
+            if (!watchlist.isRegional()) {
+                continue;
+            }
+            if (worldwide != null && worldwide.minMagnitude <= watchlist.getMinMagnitude()) {
+                worldwide.add(watchlist);
+                continue;
+            }
+
+            Request target = null;
+            for (Request request : regional) {
+                if (request.containsArea(watchlist) || request.isInsideArea(watchlist)) {
+                    target = request;
+                    break;
+                }
+            }
+            if (target == null) {
+                regional.add(new Request(watchlist));
+            } else {
+                target.add(watchlist);
+            }
+        }
+
+        List<Request> requests = new ArrayList<>();
+        if (worldwide != null) {
+            requests.add(worldwide);
+        }
+        requests.addAll(regional);
+        return requests;
+    }
+
+    /**
+     * Fetch all the given watchlists with as few requests as possible and return the
+     * earthquakes of each one, keyed by watchlist name. Watchlists whose request failed
+     * are missing from the result.
+     * <p>
+     * Performs network requests, must not be called on the UI thread.
+     */
+    public static Map<String, List<Earthquake>> fetch(List<Watchlist> watchlists) {
+        return IngestPipeline.ingest(plan(watchlists), null);
+    }
+
+    /**
+     * Return a watchlist covering every earthquake the given rule can still match: time
+     * ordered, from the rule's minimum magnitude, over its area and from the given time or
+     * the creation of the rule, whichever is later.
+     */
+    private static Watchlist coverAlertRule(AlertRule rule, long sinceMillis) {
+        String name = ALERT_WATCHLIST_PREFIX + rule.getId();
+        Watchlist watchlist;
+        if (rule.isRegional()) {
+            watchlist = new Watchlist(name, rule.getMinMagnitude(), Watchlist.ORDER_BY_TIME,
+                    MAX_SHARED_LIMIT, rule.getLatitude(), rule.getLongitude(),
+                    rule.getMaxRadiusKm());
+        } else {
+            watchlist = new Watchlist(name, rule.getMinMagnitude(), Watchlist.ORDER_BY_TIME,
+                    MAX_SHARED_LIMIT);
+        }
+        return watchlist.setStartTime(Math.max(rule.getCreatedAt(), sinceMillis));
+    }
+
+    /**
+     * Fetch the earthquakes the given alert rules can match that happened since the given
+     * time (reaching back a little for late events), and pass each fetched batch to the
+     * listener. Return true if every request succeeded, so the next evaluation can start
+     * from this one.
+     * <p>
+     * Performs network requests, must not be called on the UI thread.
+     */
+    public static boolean fetchAlerts(List<AlertRule> rules, long sinceMillis,
+                                      BatchListener listener) {
+        List<Watchlist> watchlists = new ArrayList<>();
+        for (AlertRule rule : rules) {
+            watchlists.add(coverAlertRule(rule, sinceMillis - ALERT_OVERLAP_MILLIS));
+        }
+        Map<String, List<Earthquake>> results =
+                IngestPipeline.ingest(plan(watchlists), listener);
+        return results.size() == watchlists.size();
+    }
+}
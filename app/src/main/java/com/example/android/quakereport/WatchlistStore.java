@@ -0,0 +1,120 @@
+package com.example.android.quakereport;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.text.TextUtils;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the user's saved {@link Watchlist}s in their own SharedPreferences file.
+ */
+public final class WatchlistStore {
+
+    // Tag for the log messages
+    private static final String LOG_TAG = WatchlistStore.class.getSimpleName();
+
+    // Name of the SharedPreferences file holding the watchlists
+    private static final String PREFS_NAME = "watchlists";
+
+    private static final String KEY_WATCHLISTS = "watchlists";
+
+    private final SharedPreferences prefs;
+
+    public WatchlistStore(Context context) {
+        prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Return the saved watchlists, in the order they were saved.
+     */
+    public List<Watchlist> read() {
+        List<Watchlist> watchlists = new ArrayList<>();
+
+        String json = prefs.getString(KEY_WATCHLISTS, null);
+        if (TextUtils.isEmpty(json)) {
+            return watchlists;
+        }
+
+        try {
+            JSONArray array = new JSONArray(json);
+            for (int i = 0; i < array.length(); i++) {
+                JSONObject item = array.getJSONObject(i);
+                String name = item.getString("name");
+                double minMagnitude = item.getDouble("minmag");
+                String orderBy = item.getString("orderby");
+                int limit = item.getInt("limit");
+                if (item.has("maxradiuskm")) {
+                    watchlists.add(new Watchlist(name, minMagnitude, orderBy, limit,
+                            item.getDouble("latitude"),
+                            item.getDouble("longitude"),
+                            item.getDouble("maxradiuskm")));
+                } else {
+                    watchlists.add(new Watchlist(name, minMagnitude, orderBy, limit));
+                }
+            }
+        } catch (JSONException e) {
+            Log.e(LOG_TAG, "Problem parsing the saved watchlists", e);
+        }
+        return watchlists;
+    }
+
+    /**
+     * Save the given watchlist, replacing a saved watchlist with the same name.
+     */
+    public void save(Watchlist watchlist) {
+        List<Watchlist> watchlists = read();
+        for (int i = 0; i < watchlists.size(); i++) {
+            if (watchlists.get(i).getName().equals(watchlist.getName())) {
+                watchlists.remove(i);
+                break;
+            }
+        }
+        watchlists.add(watchlist);
+        write(watchlists);
+    }
+
+    /**
+     * Remove the saved watchlist with the given name, if any.
+     */
+    public void remove(String name) {
+        List<Watchlist> watchlists = read();
+        for (int i = 0; i < watchlists.size(); i++) {
+            if (watchlists.get(i).getName().equals(name)) {
+                watchlists.remove(i);
+                write(watchlists);
+                return;
+            }
+        }
+    }
+
+    private void write(List<Watchlist> watchlists) {
+        JSONArray array = new JSONArray();
+        try {
+            for (Watchlist watchlist : watchlists) {
+                JSONObject item = new JSONObject();
+                item.put("name", watchlist.getName());
+                item.put("minmag", watchlist.getMinMagnitude());
+                item.put("orderby", watchlist.getOrderBy());
+                item.put("limit", watchlist.getLimit());
+                if (watchlist.isRegional()) {
+                    item.put("latitude", watchlist.getLatitude());
+                    item.put("longitude", watchlist.getLongitude());
+                    item.put("maxradiuskm", watchlist.getMaxRadiusKm());
+                }
+                array.put(item);
+            }
+        } catch (JSONException e) {
+            Log.e(LOG_TAG, "Problem building the saved watchlists", e);
+            return;
+        }
+
+        prefs.edit().putString(KEY_WATCHLISTS, array.toString()).apply();
+    }
+}
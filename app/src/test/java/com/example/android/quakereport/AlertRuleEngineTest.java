@@ -0,0 +1,153 @@
+package com.example.android.quakereport;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AlertRuleEngineTest {
+
+    private static final long CREATED_AT = 1000L;
+
+    private static Earthquake earthquake(String id, double magnitude, double latitude,
+                                         double longitude) {
+        return new Earthquake(id, magnitude, "10km N of Somewhere", CREATED_AT + 1,
+                "https://earthquake.usgs.gov/", latitude, longitude);
+    }
+
+    private static AlertRule regionalRule(String id, double minMagnitude, double latitude,
+                                          double longitude, double maxRadiusKm) {
+        return new AlertRule(id, minMagnitude, CREATED_AT)
+                .setRegion(latitude, longitude, maxRadiusKm);
+    }
+
+    private static List<AlertRuleEngine.Alert> evaluate(AlertRule rule, Earthquake earthquake) {
+        AlertRuleEngine engine = new AlertRuleEngine(Collections.singletonList(rule),
+                new HashSet<String>());
+        return engine.evaluate(Collections.singletonList(earthquake));
+    }
+
+    @Test
+    public void circleCrossingTheAntimeridianFromTheEast() {
+        AlertRule rule = regionalRule("rule", 4, 0, 179, 500);
+        Earthquake earthquake = earthquake("eq", 5, 0, -179.5);
+        assertTrue(earthquake.distanceKm(0, 179) < 500);
+
+        assertEquals(1, evaluate(rule, earthquake).size());
+    }
+
+    @Test
+    public void circleCrossingTheAntimeridianFromTheWest() {
+        AlertRule rule = regionalRule("rule", 4, -20, -178, 800);
+        Earthquake earthquake = earthquake("eq", 5, -20, 176);
+        assertTrue(earthquake.distanceKm(-20, -178) < 800);
+
+        assertEquals(1, evaluate(rule, earthquake).size());
+    }
+
+    @Test
+    public void circleOverThePoleReachesTheOppositeSide() {
+        AlertRule rule = regionalRule("rule", 4, 85, 0, 1000);
+        Earthquake earthquake = earthquake("eq", 5, 88, 90);
+        assertTrue(earthquake.distanceKm(85, 0) < 1000);
+
+        assertEquals(1, evaluate(rule, earthquake).size());
+    }
+
+    @Test
+    public void circleNearHalfTheGlobeCoversEveryColumn() {
+        // Reaches 87.7N, where its longitude span wraps around the globe
+        AlertRule rule = regionalRule("rule", 4, 72, 0, 1750);
+        Earthquake earthquake = earthquake("eq", 5, 82, 60);
+        assertTrue(earthquake.distanceKm(72, 0) < 1750);
+
+        assertEquals(1, evaluate(rule, earthquake).size());
+    }
+
+    @Test
+    public void earthquakeOnACellBoundary() {
+        // 10 degree cells, so (10, 20) is the corner of four cells
+        AlertRule rule = regionalRule("rule", 4, 5, 15, 800);
+        Earthquake earthquake = earthquake("eq", 5, 10, 20);
+        assertTrue(earthquake.distanceKm(5, 15) < 800);
+
+        assertEquals(1, evaluate(rule, earthquake).size());
+    }
+
+    @Test
+    public void earthquakeOutsideTheCircleInATouchedCell() {
+        AlertRule rule = regionalRule("rule", 4, 5, 15, 100);
+        Earthquake earthquake = earthquake("eq", 5, 9, 19);
+        assertTrue(earthquake.distanceKm(5, 15) > 100);
+
+        assertEquals(0, evaluate(rule, earthquake).size());
+    }
+
+    @Test
+    public void stopsAtTheFirstThresholdAboveTheMagnitude() {
+        List<AlertRule> rules = Arrays.asList(
+                new AlertRule("m7", 7, CREATED_AT),
+                new AlertRule("m3", 3, CREATED_AT),
+                new AlertRule("m5", 5, CREATED_AT));
+        AlertRuleEngine engine = new AlertRuleEngine(rules, new HashSet<String>());
+
+        List<AlertRuleEngine.Alert> alerts =
+                engine.evaluate(Collections.singletonList(earthquake("eq", 5.5, 0, 0)));
+
+        assertEquals(1, alerts.size());
+        assertEquals(2, alerts.get(0).getRules().size());
+        assertEquals(2, engine.getEvaluatedRules());
+    }
+
+    @Test
+    public void ignoresEarthquakesBeforeTheRuleWasCreated() {
+        AlertRule rule = new AlertRule("rule", 4, CREATED_AT + 10);
+
+        assertEquals(0, evaluate(rule, earthquake("eq", 5, 0, 0)).size());
+    }
+
+    @Test
+    public void matchesTheKeywordIgnoringCase() {
+        AlertRule rule = new AlertRule("rule", 4, CREATED_AT).setKeyword("SOMEWHERE");
+
+        assertEquals(1, evaluate(rule, earthquake("eq", 5, 0, 0)).size());
+    }
+
+    @Test
+    public void notifiesEachEarthquakeOnceAcrossBatches() {
+        List<AlertRule> rules = Arrays.asList(
+                new AlertRule("worldwide", 4, CREATED_AT),
+                regionalRule("regional", 4, 0, 0, 500));
+        AlertRuleEngine engine = new AlertRuleEngine(rules, new HashSet<String>());
+        Earthquake earthquake = earthquake("eq", 5, 0, 0);
+
+        List<AlertRuleEngine.Alert> first = engine.evaluate(Collections.singletonList(earthquake));
+        List<AlertRuleEngine.Alert> second = engine.evaluate(Collections.singletonList(earthquake));
+
+        assertEquals(1, first.size());
+        assertEquals(2, first.get(0).getRules().size());
+        assertEquals(0, second.size());
+        assertTrue(engine.getNotifiedEventIds().contains("eq"));
+    }
+
+    @Test
+    public void skipsEarthquakesNotifiedInAnEarlierRun() {
+        AlertRuleEngine engine = new AlertRuleEngine(
+                Collections.singletonList(new AlertRule("rule", 4, CREATED_AT)),
+                new HashSet<>(Collections.singletonList("eq")));
+
+        List<Earthquake> batch = new ArrayList<>();
+        batch.add(earthquake("eq", 5, 0, 0));
+        batch.add(earthquake("other", 5, 0, 0));
+
+        List<AlertRuleEngine.Alert> alerts = engine.evaluate(batch);
+        assertEquals(1, alerts.size());
+        assertEquals("other", alerts.get(0).getEarthquake().getId());
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.android.quakereport;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class WatchlistPlannerTest {
+
+    // 2020-01-01T00:00:00 UTC
+    private static final long NOW = 1577836800000L;
+
+    private static List<WatchlistPlanner.Request> plan(Watchlist... watchlists) {
+        return WatchlistPlanner.plan(Arrays.asList(watchlists));
+    }
+
+    private static List<String> names(WatchlistPlanner.Request request) {
+        List<String> names = new ArrayList<>();
+        for (Watchlist watchlist : request.getWatchlists()) {
+            names.add(watchlist.getName());
+        }
+        return names;
+    }
+
+    @Test
+    public void duplicateQueriesCollapseToOneQuery() {
+        List<WatchlistPlanner.Request> requests = plan(
+                new Watchlist("first", 4, Watchlist.ORDER_BY_MAGNITUDE, 10),
+                new Watchlist("second", 4, Watchlist.ORDER_BY_MAGNITUDE, 10));
+
+        assertEquals(1, requests.size());
+        List<String> urls = requests.get(0).getUrls(NOW);
+        assertEquals(1, urls.size());
+        assertTrue(urls.get(0).contains("minmag=4.0&limit=10&orderby=magnitude"));
+    }
+
+    @Test
+    public void magnitudeOrderedQueriesShareTheLargestLimit() {
+        List<WatchlistPlanner.Request> requests = plan(
+                new Watchlist("m4", 4, Watchlist.ORDER_BY_MAGNITUDE, 10),
+                new Watchlist("m5", 5, Watchlist.ORDER_BY_MAGNITUDE, 20));
+
+        List<String> urls = requests.get(0).getUrls(NOW);
+        assertEquals(1, urls.size());
+        assertTrue(urls.get(0).contains("minmag=4.0&limit=20&orderby=magnitude"));
+    }
+
+    @Test
+    public void mixedOrdersBelowTheSplitMagnitudeUseTimeWindows() {
+        List<WatchlistPlanner.Request> requests = plan(
+                new Watchlist("m1", 1, Watchlist.ORDER_BY_TIME, 100),
+                new Watchlist("m4", 4, Watchlist.ORDER_BY_MAGNITUDE, 10));
+
+        assertEquals(1, requests.size());
+        List<String> urls = requests.get(0).getUrls(NOW);
+        assertEquals(4, urls.size());
+        for (String url : urls) {
+            assertTrue(url.contains("minmag=1.0&limit=20000&orderby=time&starttime="));
+        }
+        assertTrue(urls.get(0).contains("starttime=2019-12-02T00%3A00%3A00"));
+        assertTrue(urls.get(0).contains("endtime=2019-12-09T12%3A00%3A00"));
+        assertFalse(urls.get(3).contains("endtime="));
+    }
+
+    @Test
+    public void mixedOrdersAboveTheSplitMagnitudeUseOneUrl() {
+        List<WatchlistPlanner.Request> requests = plan(
+                new Watchlist("m3", 3, Watchlist.ORDER_BY_TIME, 100),
+                new Watchlist("m4", 4, Watchlist.ORDER_BY_MAGNITUDE, 10));
+
+        List<String> urls = requests.get(0).getUrls(NOW);
+        assertEquals(1, urls.size());
+        assertTrue(urls.get(0).contains("minmag=3.0&limit=20000&orderby=time"));
+    }
+
+    @Test
+    public void regionalWatchlistRidesOnTheWorldwideRequest() {
+        List<WatchlistPlanner.Request> requests = plan(
+                new Watchlist("worldwide", 4, Watchlist.ORDER_BY_TIME, 100),
+                new Watchlist("regional", 5, Watchlist.ORDER_BY_TIME, 100, 35, 139, 300));
+
+        assertEquals(1, requests.size());
+        assertEquals(Arrays.asList("worldwide", "regional"), names(requests.get(0)));
+        assertFalse(requests.get(0).getUrls(NOW).get(0).contains("maxradiuskm"));
+    }
+
+    @Test
+    public void regionalWatchlistBelowTheWorldwideMagnitudeGetsItsOwnRequest() {
+        List<WatchlistPlanner.Request> requests = plan(
+                new Watchlist("worldwide", 4, Watchlist.ORDER_BY_TIME, 100),
+                new Watchlist("regional", 2, Watchlist.ORDER_BY_TIME, 100, 35, 139, 300));
+
+        assertEquals(2, requests.size());
+        String url = requests.get(1).getUrls(NOW).get(0);
+        assertTrue(url.contains("latitude=35.0&longitude=139.0&maxradiuskm=300.0"));
+    }
+
+    @Test
+    public void nestedCirclesMergeIntoTheLargerOne() {
+        List<WatchlistPlanner.Request> requests = plan(
+                new Watchlist("inner", 2, Watchlist.ORDER_BY_TIME, 100, 35, 139, 100),
+                new Watchlist("outer", 3, Watchlist.ORDER_BY_TIME, 100, 35.5, 139, 500));
+
+        assertEquals(1, requests.size());
+        String url = requests.get(0).getUrls(NOW).get(0);
+        assertTrue(url.contains("minmag=2.0"));
+        assertTrue(url.contains("latitude=35.5&longitude=139.0&maxradiuskm=500.0"));
+    }
+
+    @Test
+    public void disjointCirclesKeepTheirOwnRequests() {
+        List<WatchlistPlanner.Request> requests = plan(
+                new Watchlist("japan", 2, Watchlist.ORDER_BY_TIME, 100, 35, 139, 300),
+                new Watchlist("chile", 2, Watchlist.ORDER_BY_TIME, 100, -33, -70, 300));
+
+        assertEquals(2, requests.size());
+    }
+
+    @Test
+    public void requestWithAStartTimeIsNotSplit() {
+        List<WatchlistPlanner.Request> requests = plan(
+                new Watchlist("a", 1, Watchlist.ORDER_BY_TIME, 20000).setStartTime(NOW - 1000),
+                new Watchlist("b", 2, Watchlist.ORDER_BY_TIME, 20000).setStartTime(NOW - 5000));
+
+        List<String> urls = requests.get(0).getUrls(NOW);
+        assertEquals(1, urls.size());
+        assertTrue(urls.get(0).contains("starttime=2019-12-31T23%3A59%3A55"));
+        assertFalse(urls.get(0).contains("endtime="));
+    }
+
+    @Test
+    public void partitionGivesEachWatchlistItsOwnSelection() {
+        Watchlist large = new Watchlist("large", 5, Watchlist.ORDER_BY_MAGNITUDE, 1);
+        Watchlist recent = new Watchlist("recent", 2, Watchlist.ORDER_BY_TIME, 2);
+        List<WatchlistPlanner.Request> requests = plan(large, recent);
+
+        List<Earthquake> batch = Arrays.asList(
+                new Earthquake("a", 6.0, "Somewhere", 100, "url", 0, 0),
+                new Earthquake("b", 3.0, "Somewhere", 300, "url", 0, 0),
+                new Earthquake("c", 5.5, "Somewhere", 200, "url", 0, 0));
+        Map<String, List<Earthquake>> results = new HashMap<>();
+        requests.get(0).partition(batch, results);
+
+        assertEquals(1, results.get("large").size());
+        assertEquals("a", results.get("large").get(0).getId());
+        assertEquals(2, results.get("recent").size());
+        assertEquals("b", results.get("recent").get(0).getId());
+        assertEquals("c", results.get("recent").get(1).getId());
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.android.quakereport;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class WatchlistTest {
+
+    private static Earthquake earthquake(String id, double magnitude, long date,
+                                         double latitude, double longitude) {
+        return new Earthquake(id, magnitude, "Somewhere", date, "https://earthquake.usgs.gov/",
+                latitude, longitude);
+    }
+
+    private static final List<Earthquake> BATCH = Arrays.asList(
+            earthquake("small-recent", 2.1, 500, 0, 0),
+            earthquake("large-old", 6.5, 100, 0, 0),
+            earthquake("medium-newest", 4.2, 900, 0, 0),
+            earthquake("large-far", 7.0, 300, 40, 100),
+            earthquake("medium-old", 4.8, 200, 0, 0));
+
+    private static String ids(List<Earthquake> earthquakes) {
+        StringBuilder ids = new StringBuilder();
+        for (Earthquake earthquake : earthquakes) {
+            if (ids.length() > 0) {
+                ids.append(',');
+            }
+            ids.append(earthquake.getId());
+        }
+        return ids.toString();
+    }
+
+    @Test
+    public void selectOrdersByMagnitudeAndCutsToTheLimit() {
+        Watchlist watchlist = new Watchlist("w", 4, Watchlist.ORDER_BY_MAGNITUDE, 3);
+
+        assertEquals("large-far,large-old,medium-old", ids(watchlist.select(BATCH)));
+    }
+
+    @Test
+    public void selectOrdersByTimeAndCutsToTheLimit() {
+        Watchlist watchlist = new Watchlist("w", 4, Watchlist.ORDER_BY_TIME, 2);
+
+        assertEquals("medium-newest,large-far", ids(watchlist.select(BATCH)));
+    }
+
+    @Test
+    public void selectKeepsOnlyTheRegion() {
+        Watchlist watchlist = new Watchlist("w", 2, Watchlist.ORDER_BY_TIME, 10, 0, 0, 500);
+
+        assertEquals("medium-newest,small-recent,medium-old,large-old",
+                ids(watchlist.select(BATCH)));
+    }
+
+    @Test
+    public void selectKeepsOnlyEarthquakesFromTheStartTime() {
+        Watchlist watchlist = new Watchlist("w", 2, Watchlist.ORDER_BY_TIME, 10)
+                .setStartTime(300);
+
+        assertEquals("medium-newest,small-recent,large-far", ids(watchlist.select(BATCH)));
+    }
+
+    @Test
+    public void sameQueryUnderDifferentNamesHasTheSameKey() {
+        Watchlist first = new Watchlist("first", 4, Watchlist.ORDER_BY_TIME, 10);
+        Watchlist second = new Watchlist("second", 4, Watchlist.ORDER_BY_TIME, 10);
+        Watchlist regional = new Watchlist("regional", 4, Watchlist.ORDER_BY_TIME, 10, 1, 2, 3);
+
+        assertEquals(first.getKey(), second.getKey());
+        assertFalse(first.getKey().equals(regional.getKey()));
+    }
+
+    @Test
+    public void matchesIgnoresTheLimit() {
+        Watchlist watchlist = new Watchlist("w", 4, Watchlist.ORDER_BY_TIME, 1);
+
+        assertTrue(watchlist.matches(BATCH.get(1)));
+        assertTrue(watchlist.matches(BATCH.get(2)));
+        assertFalse(watchlist.matches(BATCH.get(0)));
+    }
+}